@@ -180,6 +180,20 @@ public class VideoDbIntegrationTest {
         String studio = mCursor.getString(mCursor.getColumnIndexOrThrow(VideoEntry.COLUMN_STUDIO));
         assertThat(studio).isEqualTo("Google+");
         mCursor.close();
+
+        // Search goes through the full-text index and matches word prefixes
+        mCursor = mContext.getContentResolver().query(
+                VideoEntry.SEARCH_URI,
+                null,
+                null,
+                new String[] {"pet"},
+                null
+        );
+        assertThat(mCursor.getCount()).isEqualTo(1);
+        assertThat(mCursor.moveToFirst()).isTrue();
+        String name = mCursor.getString(mCursor.getColumnIndexOrThrow(VideoEntry.COLUMN_NAME));
+        assertThat(name).isEqualTo("Pet Dog");
+        mCursor.close();
     }
 
     @Test
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.tvleanback.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CatalogSyncer brings the local video table up to date with the catalog feed, writing only what
+ * changed. The feed is requested conditionally with the validators from the previous sync, so an
+ * unchanged catalog costs a single 304 response. When the feed has changed, each batch of
+ * incoming rows is compared against the stored {@link VideoContract.VideoEntry#COLUMN_SYNC_HASH}
+ * of the videos with the same {@link VideoContract.VideoEntry#COLUMN_VIDEO_URL}, and only new or
+ * modified rows are written. Every video in the feed is marked with the generation of the sync,
+ * and the videos left with an older generation, which are no longer in the feed, are deleted at
+ * the end. Neither the feed nor the table is ever held in memory as a whole.
+ */
+public class CatalogSyncer {
+    private static final String TAG = "CatalogSyncer";
+
+    private static final String KEY_ETAG = "etag:";
+    private static final String KEY_LAST_MODIFIED = "last_modified:";
+
+    // The maximum number of rows compared and written at once.
+    private static final int BATCH_SIZE = 500;
+
+    private final VideoDbBuilder mBuilder;
+    private final ContentResolver mContentResolver;
+    private final SharedPreferences mValidators;
+
+    /**
+     * The outcome of a single sync.
+     */
+    public static final class Result {
+        public final boolean notModified;
+        public final int inserted;
+        public final int updated;
+        public final int deleted;
+        public final int unchanged;
+
+        Result(boolean notModified, int inserted, int updated, int deleted, int unchanged) {
+            this.notModified = notModified;
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.unchanged = unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return notModified ? "not modified" : "inserted=" + inserted + " updated=" + updated
+                    + " deleted=" + deleted + " unchanged=" + unchanged;
+        }
+    }
+
+    /**
+     * @param builder Parses the feed into rows
+     * @param contentResolver Used to read and write the video table
+     * @param validators Where the ETag and Last-Modified values of the last sync are kept
+     */
+    public CatalogSyncer(@NonNull VideoDbBuilder builder, @NonNull ContentResolver contentResolver,
+            @NonNull SharedPreferences validators) {
+        mBuilder = builder;
+        mContentResolver = contentResolver;
+        mValidators = validators;
+    }
+
+    /**
+     * Syncs the video table with the feed at the given URL.
+     */
+    public @NonNull Result sync(String url) throws IOException {
+        // The number of stored videos, and the generation of the last sync that saw any of them.
+        final long[] state = loadSyncState();
+        final int stored = (int) state[0];
+        final long generation = state[1] + 1;
+
+        HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+        Reader reader = null;
+        try {
+            // Validators are only worth sending if there is something to keep.
+            if (stored > 0) {
+                String etag = mValidators.getString(KEY_ETAG + url, null);
+                String lastModified = mValidators.getString(KEY_LAST_MODIFIED + url, null);
+                if (etag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Result(true, 0, 0, 0, stored);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + responseCode + " for " + url);
+            }
+
+            final int[] counts = new int[3]; // Inserted, updated, unchanged.
+            reader = new BufferedReader(new InputStreamReader(urlConnection.getInputStream(),
+                    "utf-8"));
+            mBuilder.buildMedia(reader, BATCH_SIZE, new VideoDbBuilder.BatchListener() {
+                @Override
+                public void onBatch(@NonNull List<ContentValues> batch) {
+                    Map<String, ContentValues> incoming = new LinkedHashMap<>();
+                    for (ContentValues values : batch) {
+                        String videoUrl =
+                                values.getAsString(VideoContract.VideoEntry.COLUMN_VIDEO_URL);
+                        if (!incoming.containsKey(videoUrl)) {
+                            incoming.put(videoUrl, values);
+                        }
+                    }
+                    Map<String, String> storedHashes = loadSyncHashes(incoming.keySet());
+
+                    List<ContentValues> changed = new ArrayList<>(incoming.size());
+                    List<String> unchanged = new ArrayList<>(incoming.size());
+                    for (Map.Entry<String, ContentValues> entry : incoming.entrySet()) {
+                        ContentValues values = entry.getValue();
+                        String hash = computeSyncHash(values);
+                        if (hash.equals(storedHashes.get(entry.getKey()))) {
+                            counts[2]++;
+                            unchanged.add(entry.getKey());
+                            continue;
+                        }
+                        counts[storedHashes.containsKey(entry.getKey()) ? 1 : 0]++;
+                        values.put(VideoContract.VideoEntry.COLUMN_SYNC_HASH, hash);
+                        values.put(VideoContract.VideoEntry.COLUMN_SYNC_GENERATION, generation);
+                        changed.add(values);
+                    }
+                    if (!changed.isEmpty()) {
+                        mContentResolver.bulkInsert(VideoContract.VideoEntry.CONTENT_URI,
+                                changed.toArray(new ContentValues[changed.size()]));
+                    }
+                    markSeen(unchanged, generation);
+                }
+            });
+
+            // Sweep the videos that this sync did not see.
+            int deleted = mContentResolver.delete(VideoContract.VideoEntry.CONTENT_URI,
+                    VideoContract.VideoEntry.COLUMN_SYNC_GENERATION + " < ?",
+                    new String[]{Long.toString(generation)});
+
+            // Only remember the validators once the table reflects this version of the feed.
+            mValidators.edit()
+                    .putString(KEY_ETAG + url, urlConnection.getHeaderField("ETag"))
+                    .putString(KEY_LAST_MODIFIED + url,
+                            urlConnection.getHeaderField("Last-Modified"))
+                    .apply();
+
+            Result result = new Result(false, counts[0], counts[1], deleted, counts[2]);
+            Log.d(TAG, "Synced " + url + ": " + result);
+            return result;
+        } finally {
+            urlConnection.disconnect();
+            if (null != reader) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "JSON feed closed", e);
+                }
+            }
+        }
+    }
+
+    private long[] loadSyncState() {
+        long[] state = new long[2];
+        Cursor cursor = mContentResolver.query(
+                VideoContract.VideoEntry.CONTENT_URI,
+                new String[]{
+                        "COUNT(*)",
+                        "MAX(" + VideoContract.VideoEntry.COLUMN_SYNC_GENERATION + ")"
+                },
+                null,
+                null,
+                null);
+        if (cursor == null) {
+            return state;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                state[0] = cursor.getLong(0);
+                state[1] = cursor.getLong(1); // 0 when the table is empty.
+            }
+        } finally {
+            cursor.close();
+        }
+        return state;
+    }
+
+    /**
+     * Maps each of the given videos that is already stored to the digest of the values it was
+     * last synced with.
+     */
+    private Map<String, String> loadSyncHashes(Collection<String> videoUrls) {
+        Map<String, String> hashes = new HashMap<>();
+        if (videoUrls.isEmpty()) {
+            return hashes;
+        }
+        Cursor cursor = mContentResolver.query(
+                VideoContract.VideoEntry.CONTENT_URI,
+                new String[]{
+                        VideoContract.VideoEntry.COLUMN_VIDEO_URL,
+                        VideoContract.VideoEntry.COLUMN_SYNC_HASH
+                },
+                inVideoUrls(videoUrls.size()),
+                videoUrls.toArray(new String[videoUrls.size()]),
+                null);
+        if (cursor == null) {
+            return hashes;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                hashes.put(cursor.getString(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return hashes;
+    }
+
+    /**
+     * Marks unchanged videos as seen by the sync of the given generation.
+     */
+    private void markSeen(List<String> videoUrls, long generation) {
+        if (videoUrls.isEmpty()) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(VideoContract.VideoEntry.COLUMN_SYNC_GENERATION, generation);
+        mContentResolver.update(VideoContract.VideoEntry.CONTENT_URI, values,
+                inVideoUrls(videoUrls.size()), videoUrls.toArray(new String[videoUrls.size()]));
+    }
+
+    private static String inVideoUrls(int count) {
+        StringBuilder selection = new StringBuilder(VideoContract.VideoEntry.COLUMN_VIDEO_URL)
+                .append(" IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        return selection.append(')').toString();
+    }
+
+    /**
+     * Returns a digest of the given row that is independent of the order of its columns.
+     */
+    static String computeSyncHash(ContentValues values) {
+        String[] keys = values.keySet().toArray(new String[values.size()]);
+        Arrays.sort(keys);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Charset utf8 = Charset.forName("UTF-8");
+        for (String key : keys) {
+            if (VideoContract.VideoEntry.COLUMN_SYNC_HASH.equals(key)
+                    || VideoContract.VideoEntry.COLUMN_SYNC_GENERATION.equals(key)) {
+                continue;
+            }
+            digest.update(key.getBytes(utf8));
+            digest.update((byte) 0);
+            Object value = values.get(key);
+            if (value != null) {
+                digest.update(value.toString().getBytes(utf8));
+            }
+            digest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
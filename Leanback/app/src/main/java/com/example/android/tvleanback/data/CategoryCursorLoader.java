@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.tvleanback.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+import androidx.loader.content.CursorLoader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the categories of the browse screen and the number of videos in each of them. The counts
+ * come from a single GROUP BY query over the (category, _id) index, so loading does not read or
+ * step over the videos themselves; each row pages its own videos in when it is shown.
+ */
+public class CategoryCursorLoader extends CursorLoader {
+
+    public CategoryCursorLoader(@NonNull Context context) {
+        super(context, VideoContract.CategoryEntry.CONTENT_URI, null, null, null, null);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        return new CategoryCursor(cursor, readCategories(cursor));
+    }
+
+    private static List<Category> readCategories(Cursor cursor) {
+        List<Category> categories = new ArrayList<>(cursor.getCount());
+        int nameIndex = cursor.getColumnIndexOrThrow(VideoContract.CategoryEntry.COLUMN_NAME);
+        int countIndex = cursor.getColumnIndexOrThrow(VideoContract.CategoryEntry._COUNT);
+        // One row per category.
+        while (cursor.moveToNext()) {
+            categories.add(new Category(cursor.getString(nameIndex), cursor.getInt(countIndex)));
+        }
+        cursor.moveToPosition(-1);
+        return categories;
+    }
+
+    /**
+     * A category and the number of videos in it.
+     */
+    public static final class Category {
+        public final String name;
+        public final int count;
+
+        Category(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A cursor over the category counts that also holds them as a list.
+     */
+    public static final class CategoryCursor extends CursorWrapper {
+        private final List<Category> mCategories;
+
+        CategoryCursor(Cursor cursor, List<Category> categories) {
+            super(cursor);
+            mCategories = Collections.unmodifiableList(categories);
+        }
+
+        public List<Category> getCategories() {
+            return mCategories;
+        }
+    }
+}
@@ -17,24 +17,23 @@
 package com.example.android.tvleanback.data;
 
 import android.app.IntentService;
-import android.content.ContentValues;
 import android.content.Intent;
 import android.util.Log;
 
 import com.example.android.tvleanback.R;
 
-import org.json.JSONException;
-
 import java.io.IOException;
-import java.util.List;
 
 /**
- * FetchVideoService is responsible for fetching the videos from the Internet and inserting the
+ * FetchVideoService is responsible for fetching the videos from the Internet and syncing the
  * results into a local SQLite database.
  */
 public class FetchVideoService extends IntentService {
     private static final String TAG = "FetchVideoService";
 
+    // Holds the validators of the last catalog sync.
+    private static final String SYNC_PREFERENCES = "catalog_sync";
+
     /**
      * Creates an IntentService with a default name for the worker thread.
      */
@@ -45,15 +44,17 @@ public class FetchVideoService extends IntentService {
     @Override
     protected void onHandleIntent(Intent workIntent) {
         VideoDbBuilder builder = new VideoDbBuilder(getApplicationContext());
+        CatalogSyncer syncer = new CatalogSyncer(builder,
+                getApplicationContext().getContentResolver(),
+                getSharedPreferences(SYNC_PREFERENCES, MODE_PRIVATE));
 
         try {
-            List<ContentValues> contentValuesList =
-                    builder.fetch(getResources().getString(R.string.catalog_url));
-            ContentValues[] downloadedVideoContentValues =
-                    contentValuesList.toArray(new ContentValues[contentValuesList.size()]);
-            getApplicationContext().getContentResolver().bulkInsert(VideoContract.VideoEntry.CONTENT_URI,
-                    downloadedVideoContentValues);
-        } catch (IOException | JSONException e) {
+            // Only the videos that changed since the last sync are written, and nothing at all
+            // if the server reports that the catalog has not been modified.
+            CatalogSyncer.Result result =
+                    syncer.sync(getResources().getString(R.string.catalog_url));
+            Log.d(TAG, "Catalog sync finished: " + result);
+        } catch (IOException e) {
             Log.e(TAG, "Error occurred in downloading videos");
             e.printStackTrace();
         }
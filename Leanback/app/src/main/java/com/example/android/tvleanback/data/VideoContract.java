@@ -35,18 +35,32 @@ public final class VideoContract {
 
     // The content paths.
     public static final String PATH_VIDEO = "video";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_CATEGORY = "category";
+
+    // Query parameter that limits the videos returned, as "count" or "offset,count".
+    public static final String PARAM_LIMIT = "limit";
 
     public static final class VideoEntry implements BaseColumns {
 
         public static final Uri CONTENT_URI =
                 BASE_CONTENT_URI.buildUpon().appendPath(PATH_VIDEO).build();
 
+        // The Uri used by search to look up videos through the full-text index.
+        public static final Uri SEARCH_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SEARCH)
+                .appendPath(SearchManager.SUGGEST_URI_PATH_QUERY)
+                .build();
+
         public static final String CONTENT_TYPE =
                 ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "." + PATH_VIDEO;
 
         // Name of the video table.
         public static final String TABLE_NAME = "video";
 
+        // Name of the full-text index over the video table's name and description.
+        public static final String FTS_TABLE_NAME = "video_fts";
+
         // Column with the foreign key into the category table.
         public static final String COLUMN_CATEGORY = "category";
 
@@ -104,9 +118,44 @@ public final class VideoContract {
         // The action intent for the result.
         public static final String COLUMN_ACTION = SearchManager.SUGGEST_COLUMN_INTENT_ACTION;
 
+        // The columns needed to show a video as a card and to open it, see VideoCursorMapper.
+        // Prefer this to a null projection, which pulls every column of every row.
+        public static final String[] CARD_PROJECTION = {
+                _ID,
+                COLUMN_CATEGORY,
+                COLUMN_NAME,
+                COLUMN_DESC,
+                COLUMN_VIDEO_URL,
+                COLUMN_BG_IMAGE_URL,
+                COLUMN_CARD_IMG,
+                COLUMN_STUDIO
+        };
+
+        // A digest of the values last synced from the catalog, used to skip unchanged rows.
+        public static final String COLUMN_SYNC_HASH = "sync_hash";
+
+        // The catalog sync that last saw the video in the feed, videos left behind are deleted.
+        public static final String COLUMN_SYNC_GENERATION = "sync_generation";
+
         // Returns the Uri referencing a video with the specified id.
         public static Uri buildVideoUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
     }
+
+    /**
+     * The categories of the video table, one row per category with the number of videos in it in
+     * {@link #_COUNT}, ordered by name.
+     */
+    public static final class CategoryEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_CATEGORY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "." + PATH_CATEGORY;
+
+        // Name of the category.
+        public static final String COLUMN_NAME = VideoEntry.COLUMN_CATEGORY;
+    }
 }
@@ -19,6 +19,8 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.media.Rating;
 import androidx.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
 import com.example.android.tvleanback.R;
@@ -30,6 +32,7 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
@@ -55,6 +58,13 @@ public class VideoDbBuilder {
 
     private Context mContext;
 
+    /**
+     * Receives rows from the streaming parser, one bounded batch at a time.
+     */
+    public interface BatchListener {
+        void onBatch(@NonNull List<ContentValues> batch);
+    }
+
     /**
      * Default constructor that can be used for tests
      */
@@ -109,41 +119,236 @@ public class VideoDbBuilder {
                 String cardImageUrl = video.optString(TAG_CARD_THUMB);
                 String studio = video.optString(TAG_STUDIO);
 
-                ContentValues videoValues = new ContentValues();
-                videoValues.put(VideoContract.VideoEntry.COLUMN_CATEGORY, categoryName);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_NAME, title);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_DESC, description);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_URL, videoUrl);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_CARD_IMG, cardImageUrl);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_BG_IMAGE_URL, bgImageUrl);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_STUDIO, studio);
-
-                // Fixed defaults.
-                videoValues.put(VideoContract.VideoEntry.COLUMN_CONTENT_TYPE, "video/mp4");
-                videoValues.put(VideoContract.VideoEntry.COLUMN_IS_LIVE, false);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_AUDIO_CHANNEL_CONFIG, "2.0");
-                videoValues.put(VideoContract.VideoEntry.COLUMN_PRODUCTION_YEAR, 2014);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_DURATION, 0);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_RATING_STYLE,
-                        Rating.RATING_5_STARS);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_RATING_SCORE, 3.5f);
-                if (mContext != null) {
-                    videoValues.put(VideoContract.VideoEntry.COLUMN_PURCHASE_PRICE,
-                            mContext.getResources().getString(R.string.buy_2));
-                    videoValues.put(VideoContract.VideoEntry.COLUMN_RENTAL_PRICE,
-                            mContext.getResources().getString(R.string.rent_2));
-                    videoValues.put(VideoContract.VideoEntry.COLUMN_ACTION,
-                            mContext.getResources().getString(R.string.global_search));
+                ContentValues videoValues = buildVideoValues(categoryName, title, description,
+                        videoUrl, bgImageUrl, cardImageUrl, studio);
+                videosToInsert.add(videoValues);
+            }
+        }
+        return videosToInsert;
+    }
+
+    /**
+     * Reads the {@code googlevideos} → {@code videos} arrays from the given stream with a pull
+     * parser and hands the rows to the listener in bounded batches. Peak memory is proportional
+     * to {@code batchSize} rather than to the size of the catalog.
+     * <p>
+     * A category should give its {@code category} name before its {@code videos}. Videos listed
+     * before the name are held until the name is read, and a category that holds more than
+     * {@code batchSize} of them this way is rejected. Entries of an unexpected type, such as a
+     * null category name or a video that is not an object, are skipped.
+     * @param in The JSON feed
+     * @param batchSize The maximum number of rows handed to the listener at once
+     * @param listener Receives each batch of rows as soon as it is full
+     * @return the total number of rows emitted
+     * @throws IOException if the stream cannot be read, the JSON is malformed or does not have
+     *         the expected structure
+     */
+    public int buildMedia(@NonNull Reader in, int batchSize, @NonNull BatchListener listener)
+            throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        try {
+            return readFeed(new JsonReader(in), batchSize, listener);
+        } catch (IllegalStateException e) {
+            // JsonReader reports a token of an unexpected type this way.
+            throw new IOException("Unexpected JSON structure", e);
+        }
+    }
+
+    private int readFeed(JsonReader reader, int batchSize, BatchListener listener)
+            throws IOException {
+        List<ContentValues> batch = new ArrayList<>(batchSize);
+        int emitted = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!TAG_GOOGLE_VIDEOS.equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                String categoryName = null;
+                boolean categoryRead = false;
+                // Only used when a category lists its videos before its name.
+                List<ContentValues> pending = null;
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (TAG_CATEGORY.equals(name)) {
+                        // A category without a usable name drops its videos.
+                        if (reader.peek() == JsonToken.STRING) {
+                            categoryName = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                        categoryRead = true;
+                    } else if (TAG_MEDIA.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            ContentValues videoValues = readVideo(reader, categoryName);
+                            if (videoValues == null || (categoryRead && categoryName == null)) {
+                                continue;
+                            }
+                            if (categoryName == null) {
+                                if (pending == null) {
+                                    pending = new ArrayList<>();
+                                } else if (pending.size() >= batchSize) {
+                                    throw new IOException("More than " + batchSize
+                                            + " videos listed before their category name");
+                                }
+                                pending.add(videoValues);
+                                continue;
+                            }
+                            batch.add(videoValues);
+                            if (batch.size() >= batchSize) {
+                                emitted += flush(batch, listener);
+                            }
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (pending != null && categoryName != null) {
+                    for (ContentValues videoValues : pending) {
+                        videoValues.put(VideoContract.VideoEntry.COLUMN_CATEGORY, categoryName);
+                        batch.add(videoValues);
+                        if (batch.size() >= batchSize) {
+                            emitted += flush(batch, listener);
+                        }
+                    }
                 }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
 
-                // TODO: Get these dimensions.
-                videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_WIDTH, 1280);
-                videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_HEIGHT, 720);
+        if (!batch.isEmpty()) {
+            emitted += flush(batch, listener);
+        }
+        return emitted;
+    }
 
-                videosToInsert.add(videoValues);
+    private static int flush(List<ContentValues> batch, BatchListener listener) {
+        int size = batch.size();
+        listener.onBatch(new ArrayList<>(batch));
+        batch.clear();
+        return size;
+    }
+
+    /**
+     * Reads a single video object, returning null if it is not an object or has no playable
+     * source.
+     */
+    private ContentValues readVideo(JsonReader reader, String categoryName) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String title = "";
+        String description = "";
+        String videoUrl = null;
+        String bgImageUrl = "";
+        String cardImageUrl = "";
+        String studio = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case TAG_TITLE:
+                    title = reader.nextString();
+                    break;
+                case TAG_DESCRIPTION:
+                    description = reader.nextString();
+                    break;
+                case TAG_BACKGROUND:
+                    bgImageUrl = reader.nextString();
+                    break;
+                case TAG_CARD_THUMB:
+                    cardImageUrl = reader.nextString();
+                    break;
+                case TAG_STUDIO:
+                    studio = reader.nextString();
+                    break;
+                case TAG_SOURCES:
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (videoUrl == null && reader.peek() == JsonToken.STRING) {
+                            videoUrl = reader.nextString(); // Get the first video only.
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
-        return videosToInsert;
+        reader.endObject();
+
+        // If there are no URLs, skip this video entry.
+        if (videoUrl == null) {
+            return null;
+        }
+        return buildVideoValues(categoryName, title, description, videoUrl, bgImageUrl,
+                cardImageUrl, studio);
+    }
+
+    private ContentValues buildVideoValues(String categoryName, String title, String description,
+            String videoUrl, String bgImageUrl, String cardImageUrl, String studio) {
+        ContentValues videoValues = new ContentValues();
+        videoValues.put(VideoContract.VideoEntry.COLUMN_CATEGORY, categoryName);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_NAME, title);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_DESC, description);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_URL, videoUrl);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_CARD_IMG, cardImageUrl);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_BG_IMAGE_URL, bgImageUrl);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_STUDIO, studio);
+
+        // Fixed defaults.
+        videoValues.put(VideoContract.VideoEntry.COLUMN_CONTENT_TYPE, "video/mp4");
+        videoValues.put(VideoContract.VideoEntry.COLUMN_IS_LIVE, false);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_AUDIO_CHANNEL_CONFIG, "2.0");
+        videoValues.put(VideoContract.VideoEntry.COLUMN_PRODUCTION_YEAR, 2014);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_DURATION, 0);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_RATING_STYLE, Rating.RATING_5_STARS);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_RATING_SCORE, 3.5f);
+        if (mContext != null) {
+            videoValues.put(VideoContract.VideoEntry.COLUMN_PURCHASE_PRICE,
+                    mContext.getResources().getString(R.string.buy_2));
+            videoValues.put(VideoContract.VideoEntry.COLUMN_RENTAL_PRICE,
+                    mContext.getResources().getString(R.string.rent_2));
+            videoValues.put(VideoContract.VideoEntry.COLUMN_ACTION,
+                    mContext.getResources().getString(R.string.global_search));
+        }
+
+        // TODO: Get these dimensions.
+        videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_WIDTH, 1280);
+        videoValues.put(VideoContract.VideoEntry.COLUMN_VIDEO_HEIGHT, 720);
+        return videoValues;
     }
 
     /**
@@ -28,11 +28,19 @@ import com.example.android.tvleanback.data.VideoContract.VideoEntry;
 public class VideoDbHelper extends SQLiteOpenHelper {
 
     // Change this when you change the database schema.
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 9;
 
     // The name of our database.
     private static final String DATABASE_NAME = "leanback.db";
 
+    private static final String FTS_COLUMNS =
+            VideoEntry.COLUMN_NAME + ", " + VideoEntry.COLUMN_DESC;
+    private static final String FTS_DELETE_OLD = "DELETE FROM " + VideoEntry.FTS_TABLE_NAME
+            + " WHERE docid = old." + VideoEntry._ID + "; ";
+    private static final String FTS_INSERT_NEW = "INSERT INTO " + VideoEntry.FTS_TABLE_NAME
+            + "(docid, " + FTS_COLUMNS + ") VALUES (new." + VideoEntry._ID + ", new."
+            + VideoEntry.COLUMN_NAME + ", new." + VideoEntry.COLUMN_DESC + "); ";
+
     public VideoDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -60,23 +68,110 @@ public class VideoDbHelper extends SQLiteOpenHelper {
                 VideoEntry.COLUMN_RATING_SCORE + " TEXT NOT NULL, " +
                 VideoEntry.COLUMN_PRODUCTION_YEAR + " TEXT NOT NULL, " +
                 VideoEntry.COLUMN_DURATION + " TEXT NOT NULL, " +
-                VideoEntry.COLUMN_ACTION + " TEXT NOT NULL " +
+                VideoEntry.COLUMN_ACTION + " TEXT NOT NULL, " +
+                VideoEntry.COLUMN_SYNC_HASH + " TEXT, " +
+                VideoEntry.COLUMN_SYNC_GENERATION + " INTEGER NOT NULL DEFAULT 0 " +
                 " );";
 
         // Do the creating of the databases.
         db.execSQL(SQL_CREATE_VIDEO_TABLE);
+        createCategoryIndex(db);
+        createFtsTable(db);
+    }
+
+    /**
+     * Indexes categories so that browsing by category does not scan the whole table.
+     */
+    private static void createCategoryIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + VideoEntry.TABLE_NAME + "_category_idx ON "
+                + VideoEntry.TABLE_NAME + " (" + VideoEntry.COLUMN_CATEGORY + ", "
+                + VideoEntry._ID + ");");
+    }
+
+    /**
+     * Creates an external content FTS4 index over the name and description of each video, and
+     * the triggers that keep it in sync with the video table. Search suggestions are served from
+     * this index instead of scanning the video table with LIKE. One and two letter prefixes are
+     * indexed as well, since those are what a search starts with and they match the most words.
+     */
+    private static void createFtsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + VideoEntry.FTS_TABLE_NAME + " USING fts4("
+                + FTS_COLUMNS + ", content=\"" + VideoEntry.TABLE_NAME + "\", "
+                + "tokenize=unicode61, prefix=\"1,2\");");
+
+        db.execSQL("CREATE TRIGGER " + VideoEntry.FTS_TABLE_NAME + "_bd BEFORE DELETE ON "
+                + VideoEntry.TABLE_NAME + " BEGIN " + FTS_DELETE_OLD + "END;");
+        db.execSQL("CREATE TRIGGER " + VideoEntry.FTS_TABLE_NAME + "_ai AFTER INSERT ON "
+                + VideoEntry.TABLE_NAME + " BEGIN " + FTS_INSERT_NEW + "END;");
+        createFtsUpdateTriggers(db);
+    }
+
+    /**
+     * Only updates of the indexed columns touch the index, so that marking the videos seen by a
+     * catalog sync does not rewrite it.
+     */
+    private static void createFtsUpdateTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + VideoEntry.FTS_TABLE_NAME + "_bu BEFORE UPDATE OF "
+                + FTS_COLUMNS + " ON " + VideoEntry.TABLE_NAME
+                + " BEGIN " + FTS_DELETE_OLD + "END;");
+        db.execSQL("CREATE TRIGGER " + VideoEntry.FTS_TABLE_NAME + "_au AFTER UPDATE OF "
+                + FTS_COLUMNS + " ON " + VideoEntry.TABLE_NAME
+                + " BEGIN " + FTS_INSERT_NEW + "END;");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Simply discard all old data and start over when upgrading.
-        db.execSQL("DROP TABLE IF EXISTS " + VideoEntry.TABLE_NAME);
-        onCreate(db);
+        if (oldVersion < 4) {
+            // Too old to migrate, discard all old data and start over.
+            resetDatabase(db);
+            return;
+        }
+
+        // Migrate in place so that existing videos survive and the next sync can be incremental.
+        if (oldVersion < 5) {
+            createFtsTable(db);
+            db.execSQL("INSERT INTO " + VideoEntry.FTS_TABLE_NAME + "("
+                    + VideoEntry.FTS_TABLE_NAME + ") VALUES ('rebuild');");
+        }
+        if (oldVersion < 6) {
+            createCategoryIndex(db);
+        }
+        if (oldVersion < 7) {
+            db.execSQL("ALTER TABLE " + VideoEntry.TABLE_NAME + " ADD COLUMN "
+                    + VideoEntry.COLUMN_SYNC_HASH + " TEXT;");
+        }
+        if (oldVersion < 8) {
+            db.execSQL("ALTER TABLE " + VideoEntry.TABLE_NAME + " ADD COLUMN "
+                    + VideoEntry.COLUMN_SYNC_GENERATION + " INTEGER NOT NULL DEFAULT 0;");
+            if (oldVersion >= 5) {
+                // Versions 5 to 7 created the update triggers over every column.
+                db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_bu;");
+                db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_au;");
+                createFtsUpdateTriggers(db);
+            }
+        }
+        if (oldVersion >= 5 && oldVersion < 9) {
+            // The prefix indexes can only be set when the table is created.
+            db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_bd;");
+            db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_ai;");
+            db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_bu;");
+            db.execSQL("DROP TRIGGER IF EXISTS " + VideoEntry.FTS_TABLE_NAME + "_au;");
+            db.execSQL("DROP TABLE IF EXISTS " + VideoEntry.FTS_TABLE_NAME + ";");
+            createFtsTable(db);
+            db.execSQL("INSERT INTO " + VideoEntry.FTS_TABLE_NAME + "("
+                    + VideoEntry.FTS_TABLE_NAME + ") VALUES ('rebuild');");
+        }
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Do the same thing as upgrading...
-        onUpgrade(db, oldVersion, newVersion);
+        // There is no way to migrate down, so discard all old data and start over.
+        resetDatabase(db);
+    }
+
+    private void resetDatabase(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + VideoEntry.FTS_TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + VideoEntry.TABLE_NAME);
+        onCreate(db);
     }
 }
@@ -23,13 +23,22 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import androidx.annotation.NonNull;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * VideoProvider is a ContentProvider that provides videos for the rest of applications.
@@ -43,6 +52,15 @@ public class VideoProvider extends ContentProvider {
     private static final int VIDEO_WITH_CATEGORY = 2;
     private static final int SEARCH_SUGGEST = 3;
     private static final int REFRESH_SHORTCUT = 4;
+    private static final int CATEGORY = 5;
+
+    // Search results kept when the caller sets no lower limit.
+    private static final int MAX_RANKED_RESULTS = 100;
+    // Matches read from the index per query. Ranking reads no more than this, however many videos
+    // a short prefix matches.
+    private static final int MAX_CANDIDATES = 250;
+    // Relevance weight of the name and description columns of the full-text index.
+    private static final double[] FTS_COLUMN_WEIGHTS = {4.0, 1.0};
 
     private static final SQLiteQueryBuilder sVideosContainingQueryBuilder;
     private static final String[] sVideosContainingQueryColumns;
@@ -93,6 +111,7 @@ public class VideoProvider extends ContentProvider {
         // For each type of URI to add, create a corresponding code.
         matcher.addURI(authority, VideoContract.PATH_VIDEO, VIDEO);
         matcher.addURI(authority, VideoContract.PATH_VIDEO + "/*", VIDEO_WITH_CATEGORY);
+        matcher.addURI(authority, VideoContract.PATH_CATEGORY, CATEGORY);
 
         // Search related URIs.
         matcher.addURI(authority, "search/" + SearchManager.SUGGEST_URI_PATH_QUERY, SEARCH_SUGGEST);
@@ -100,18 +119,147 @@ public class VideoProvider extends ContentProvider {
         return matcher;
     }
 
-    private Cursor getSuggestions(String query) {
+    private Cursor getSuggestions(String query, String limit) {
         query = query.toLowerCase();
-        return sVideosContainingQueryBuilder.query(
-                mOpenHelper.getReadableDatabase(),
-                sVideosContainingQueryColumns,
-                VideoContract.VideoEntry.COLUMN_NAME + " LIKE ? OR " +
-                        VideoContract.VideoEntry.COLUMN_DESC + " LIKE ?",
-                new String[]{"%" + query + "%", "%" + query + "%"},
-                null,
-                null,
-                null
-        );
+        String match = buildMatchQuery(query, null);
+        if (match == null) {
+            // Nothing the index can match on, fall back to a plain scan.
+            return sVideosContainingQueryBuilder.query(
+                    mOpenHelper.getReadableDatabase(),
+                    sVideosContainingQueryColumns,
+                    VideoContract.VideoEntry.COLUMN_NAME + " LIKE ? OR " +
+                            VideoContract.VideoEntry.COLUMN_DESC + " LIKE ?",
+                    new String[]{"%" + query + "%", "%" + query + "%"},
+                    null,
+                    null,
+                    null,
+                    limit
+            );
+        }
+
+        // Rank the matches by relevance, reading only their ids and match statistics from the
+        // index, then load the best ones in that order.
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        int maxResults = MAX_RANKED_RESULTS;
+        if (limit != null) {
+            try {
+                maxResults = Math.max(0, Math.min(maxResults, Integer.parseInt(limit)));
+            } catch (NumberFormatException e) {
+                // Keep the default.
+            }
+        }
+        List<Long> ids = rankMatches(db,
+                buildMatchQuery(query, VideoContract.VideoEntry.COLUMN_NAME), match, maxResults);
+        if (ids.isEmpty()) {
+            return new MatrixCursor(sVideosContainingQueryColumns);
+        }
+
+        // The ids come from the index, so they are inlined rather than bound to stay clear of
+        // the limit on bound arguments.
+        StringBuilder selection = new StringBuilder(VideoContract.VideoEntry._ID).append(" IN (");
+        StringBuilder order = new StringBuilder("CASE ").append(VideoContract.VideoEntry._ID);
+        for (int i = 0; i < ids.size(); i++) {
+            selection.append(i == 0 ? "" : ",").append(ids.get(i));
+            order.append(" WHEN ").append(ids.get(i)).append(" THEN ").append(i);
+        }
+        selection.append(')');
+        order.append(" END");
+        return sVideosContainingQueryBuilder.query(db, sVideosContainingQueryColumns,
+                selection.toString(), null, null, null, order.toString());
+    }
+
+    /**
+     * Returns the ids of the best {@code maxResults} videos matching the FTS query, best first.
+     * Hits in the name weigh more than hits in the description.
+     *
+     * Only up to MAX_CANDIDATES videos whose name matches are scored, plus as many videos
+     * matching anywhere when those are not enough to fill the results. A short prefix can match
+     * most of the table, and scoring every match would make each keystroke cost as much.
+     */
+    private static List<Long> rankMatches(SQLiteDatabase db, String nameMatch, String match,
+            int maxResults) {
+        Map<Long, byte[]> candidates = new HashMap<>();
+        readCandidates(db, nameMatch, candidates);
+        if (candidates.size() < maxResults) {
+            readCandidates(db, match, candidates);
+        }
+
+        // Keeps the best maxResults, with the worst of them at the head.
+        PriorityQueue<ScoredVideo> best =
+                new PriorityQueue<>(maxResults + 1, Collections.<ScoredVideo>reverseOrder());
+        for (Map.Entry<Long, byte[]> candidate : candidates.entrySet()) {
+            best.add(new ScoredVideo(candidate.getKey(),
+                    Bm25.score(candidate.getValue(), FTS_COLUMN_WEIGHTS)));
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+
+        Long[] ids = new Long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().mId;
+        }
+        return Arrays.asList(ids);
+    }
+
+    /**
+     * Reads the id and match statistics of up to MAX_CANDIDATES videos matching the FTS query.
+     * Statistics read before for the same video are replaced, the query over every column
+     * accounts for more of its hits than the one over the name.
+     */
+    private static void readCandidates(SQLiteDatabase db, String match,
+            Map<Long, byte[]> candidates) {
+        Cursor cursor = db.rawQuery("SELECT docid, matchinfo("
+                + VideoContract.VideoEntry.FTS_TABLE_NAME + ", '" + Bm25.MATCHINFO_FORMAT
+                + "') FROM " + VideoContract.VideoEntry.FTS_TABLE_NAME + " WHERE "
+                + VideoContract.VideoEntry.FTS_TABLE_NAME + " MATCH ? LIMIT " + MAX_CANDIDATES,
+                new String[]{match});
+        try {
+            while (cursor.moveToNext()) {
+                candidates.put(cursor.getLong(0), cursor.getBlob(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static final class ScoredVideo implements Comparable<ScoredVideo> {
+        final long mId;
+        final double mScore;
+
+        ScoredVideo(long id, double score) {
+            mId = id;
+            mScore = score;
+        }
+
+        @Override
+        public int compareTo(@NonNull ScoredVideo other) {
+            // Best first, ties in id order so that results are stable.
+            int byScore = Double.compare(other.mScore, mScore);
+            return byScore != 0 ? byScore : Long.compare(mId, other.mId);
+        }
+    }
+
+    /**
+     * Turns free text into an FTS prefix query that matches videos containing every word,
+     * e.g. "big buck" becomes {@code big* buck*}. If a column is given, the words must all be
+     * in that column. Returns null if the text has no words.
+     */
+    static String buildMatchQuery(String query, String column) {
+        StringBuilder match = new StringBuilder();
+        for (String token : query.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            if (column != null) {
+                match.append(column).append(':');
+            }
+            match.append(token).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
     }
 
     private static HashMap<String, String> buildColumnMap() {
@@ -158,13 +306,15 @@ public class VideoProvider extends ContentProvider {
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
             String[] selectionArgs, String sortOrder) {
         Cursor retCursor;
+        Uri notificationUri = uri;
         switch (sUriMatcher.match(uri)) {
             case SEARCH_SUGGEST: {
                 String rawQuery = "";
                 if (selectionArgs != null && selectionArgs.length > 0) {
                     rawQuery = selectionArgs[0];
                 }
-                retCursor = getSuggestions(rawQuery);
+                retCursor = getSuggestions(rawQuery,
+                        uri.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT));
                 break;
             }
             case VIDEO: {
@@ -175,16 +325,35 @@ public class VideoProvider extends ContentProvider {
                         selectionArgs,
                         null,
                         null,
-                        sortOrder
+                        sortOrder,
+                        uri.getQueryParameter(VideoContract.PARAM_LIMIT)
                 );
                 break;
             }
+            case CATEGORY: {
+                // Answered from the (category, _id) index without reading the video rows.
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        VideoContract.VideoEntry.TABLE_NAME,
+                        new String[]{
+                                VideoContract.CategoryEntry.COLUMN_NAME,
+                                "COUNT(*) AS " + VideoContract.CategoryEntry._COUNT
+                        },
+                        null,
+                        null,
+                        VideoContract.CategoryEntry.COLUMN_NAME,
+                        null,
+                        VideoContract.CategoryEntry.COLUMN_NAME
+                );
+                // The counts change whenever the videos do.
+                notificationUri = VideoContract.VideoEntry.CONTENT_URI;
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
         }
 
-        retCursor.setNotificationUri(mContentResolver, uri);
+        retCursor.setNotificationUri(mContentResolver, notificationUri);
         return retCursor;
     }
 
@@ -196,6 +365,8 @@ public class VideoProvider extends ContentProvider {
                 return VideoContract.VideoEntry.CONTENT_TYPE;
             case VIDEO:
                 return VideoContract.VideoEntry.CONTENT_TYPE;
+            case CATEGORY:
+                return VideoContract.CategoryEntry.CONTENT_TYPE;
 
             // The Android TV global search is querying our app for relevant content.
             case SEARCH_SUGGEST:
@@ -290,21 +461,32 @@ public class VideoProvider extends ContentProvider {
                 final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
                 int returnCount = 0;
 
+                // Rows normally share a single column set, so this holds one pair of statements.
+                Map<Set<String>, UpsertStatements> statements = new HashMap<>();
                 db.beginTransaction();
                 try {
                     for (ContentValues value : values) {
-                        long _id = db.insertWithOnConflict(VideoContract.VideoEntry.TABLE_NAME,
-                                null, value, SQLiteDatabase.CONFLICT_REPLACE);
-                        if (_id != -1) {
+                        UpsertStatements upsert = statements.get(value.keySet());
+                        if (upsert == null) {
+                            upsert = new UpsertStatements(db, value.keySet());
+                            statements.put(new HashSet<>(value.keySet()), upsert);
+                        }
+                        if (upsert.execute(value)) {
                             returnCount++;
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
+                    for (UpsertStatements upsert : statements.values()) {
+                        upsert.close();
+                    }
                 }
 
-                mContentResolver.notifyChange(uri, null);
+                // Notify once for the whole batch so that loaders re-query a single time.
+                if (returnCount != 0) {
+                    mContentResolver.notifyChange(uri, null);
+                }
                 return returnCount;
             }
             default: {
@@ -312,4 +494,86 @@ public class VideoProvider extends ContentProvider {
             }
         }
     }
+
+    /**
+     * A pair of compiled statements that insert a video, or update the existing row in place when
+     * a video with the same {@link VideoContract.VideoEntry#COLUMN_VIDEO_URL} already exists.
+     * Updating in place rather than replacing keeps the row's _ID stable for anything that
+     * references it, such as recommendations and search shortcuts.
+     */
+    private static final class UpsertStatements {
+        private final String[] mColumns;
+        private final SQLiteStatement mInsert;
+        private final SQLiteStatement mUpdate;
+
+        UpsertStatements(SQLiteDatabase db, Set<String> columns) {
+            mColumns = columns.toArray(new String[columns.size()]);
+
+            StringBuilder insert = new StringBuilder("INSERT OR IGNORE INTO ")
+                    .append(VideoContract.VideoEntry.TABLE_NAME).append(" (");
+            StringBuilder placeholders = new StringBuilder();
+            StringBuilder update = new StringBuilder("UPDATE ")
+                    .append(VideoContract.VideoEntry.TABLE_NAME).append(" SET ");
+            for (int i = 0; i < mColumns.length; i++) {
+                if (i > 0) {
+                    insert.append(',');
+                    placeholders.append(',');
+                    update.append(',');
+                }
+                insert.append(mColumns[i]);
+                placeholders.append('?');
+                update.append(mColumns[i]).append("=?");
+            }
+            insert.append(") VALUES (").append(placeholders).append(')');
+            update.append(" WHERE ").append(VideoContract.VideoEntry.COLUMN_VIDEO_URL)
+                    .append("=?");
+
+            mInsert = db.compileStatement(insert.toString());
+            mUpdate = db.compileStatement(update.toString());
+        }
+
+        /**
+         * @return true if a row was inserted or updated
+         */
+        boolean execute(ContentValues values) {
+            bind(mInsert, values);
+            if (mInsert.executeInsert() != -1) {
+                return true;
+            }
+
+            String videoUrl = values.getAsString(VideoContract.VideoEntry.COLUMN_VIDEO_URL);
+            if (videoUrl == null) {
+                return false;
+            }
+            bind(mUpdate, values);
+            mUpdate.bindString(mColumns.length + 1, videoUrl);
+            return mUpdate.executeUpdateDelete() > 0;
+        }
+
+        private void bind(SQLiteStatement statement, ContentValues values) {
+            statement.clearBindings();
+            for (int i = 0; i < mColumns.length; i++) {
+                Object value = values.get(mColumns[i]);
+                int index = i + 1;
+                if (value == null) {
+                    statement.bindNull(index);
+                } else if (value instanceof Boolean) {
+                    statement.bindLong(index, (Boolean) value ? 1 : 0);
+                } else if (value instanceof Float || value instanceof Double) {
+                    statement.bindDouble(index, ((Number) value).doubleValue());
+                } else if (value instanceof Number) {
+                    statement.bindLong(index, ((Number) value).longValue());
+                } else if (value instanceof byte[]) {
+                    statement.bindBlob(index, (byte[]) value);
+                } else {
+                    statement.bindString(index, value.toString());
+                }
+            }
+        }
+
+        void close() {
+            mInsert.close();
+            mUpdate.close();
+        }
+    }
 }
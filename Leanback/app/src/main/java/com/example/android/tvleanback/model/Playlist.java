@@ -57,6 +57,25 @@ public class Playlist {
         this.currentPosition = currentPosition;
     }
 
+    /**
+     * Returns the current position in the playlist.
+     *
+     * @return The current position.
+     */
+    public int getCurrentPosition() {
+        return currentPosition;
+    }
+
+    /**
+     * Returns the video at the given position in the playlist.
+     *
+     * @param position of the video.
+     * @return The video at that position.
+     */
+    public Video get(int position) {
+        return playlist.get(position);
+    }
+
     /**
      * Returns the size of the playlist.
      *
@@ -22,18 +22,21 @@ import androidx.leanback.database.CursorMapper;
 import com.example.android.tvleanback.data.VideoContract;
 
 /**
- * VideoCursorMapper maps a database Cursor to a Video object.
+ * VideoCursorMapper maps a database Cursor to a Video object. Column indices are resolved per
+ * cursor, so each adapter or loader should own its own instance. Columns missing from the
+ * cursor's projection map to null, so queries only need to select what they use, typically
+ * {@link VideoContract.VideoEntry#CARD_PROJECTION}.
  */
 public final class VideoCursorMapper extends CursorMapper {
 
-    private static int idIndex;
-    private static int nameIndex;
-    private static int descIndex;
-    private static int videoUrlIndex;
-    private static int bgImageUrlIndex;
-    private static int cardImageUrlIndex;
-    private static int studioIndex;
-    private static int categoryIndex;
+    private int idIndex;
+    private int nameIndex;
+    private int descIndex;
+    private int videoUrlIndex;
+    private int bgImageUrlIndex;
+    private int cardImageUrlIndex;
+    private int studioIndex;
+    private int categoryIndex;
 
     @Override
     protected void bindColumns(Cursor cursor) {
@@ -51,14 +54,14 @@ public final class VideoCursorMapper extends CursorMapper {
     protected Object bind(Cursor cursor) {
 
         // Get the values of the video.
-        long id = cursor.getLong(idIndex);
-        String category = cursor.getString(categoryIndex);
-        String title = cursor.getString(nameIndex);
-        String desc = cursor.getString(descIndex);
-        String videoUrl = cursor.getString(videoUrlIndex);
-        String bgImageUrl = cursor.getString(bgImageUrlIndex);
-        String cardImageUrl = cursor.getString(cardImageUrlIndex);
-        String studio = cursor.getString(studioIndex);
+        long id = idIndex < 0 ? 0 : cursor.getLong(idIndex);
+        String category = getString(cursor, categoryIndex);
+        String title = getString(cursor, nameIndex);
+        String desc = getString(cursor, descIndex);
+        String videoUrl = getString(cursor, videoUrlIndex);
+        String bgImageUrl = getString(cursor, bgImageUrlIndex);
+        String cardImageUrl = getString(cursor, cardImageUrlIndex);
+        String studio = getString(cursor, studioIndex);
 
         // Build a Video object to be processed.
         return new Video.VideoBuilder()
@@ -72,4 +75,8 @@ public final class VideoCursorMapper extends CursorMapper {
                 .studio(studio)
                 .build();
     }
+
+    private static String getString(Cursor cursor, int index) {
+        return index < 0 ? null : cursor.getString(index);
+    }
 }
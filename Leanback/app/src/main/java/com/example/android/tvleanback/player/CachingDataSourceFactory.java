@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link DataSource.Factory} that keeps what it reads in a size bounded, least recently used
+ * disk cache, so re-watching, seeking back or replaying a video does not download it again.
+ * Every factory that uses the same directory shares the same cache. Reads are counted as hits
+ * when they are served entirely from the cache, and as misses otherwise.
+ */
+public class CachingDataSourceFactory implements DataSource.Factory {
+
+    // The maximum size of a single file in the cache.
+    private static final long MAX_CACHE_FILE_BYTES = 2 * 1024 * 1024;
+
+    /** Decides which requests share a cache entry. */
+    public interface CacheKeyPolicy {
+        String getCacheKey(Uri uri);
+    }
+
+    /** Caches each distinct URL separately. */
+    public static final CacheKeyPolicy FULL_URL = new CacheKeyPolicy() {
+        @Override
+        public String getCacheKey(Uri uri) {
+            return uri.toString();
+        }
+    };
+
+    /**
+     * Ignores the query string, for hosts that put short lived tokens in the query of otherwise
+     * identical URLs.
+     */
+    public static final CacheKeyPolicy URL_WITHOUT_QUERY = new CacheKeyPolicy() {
+        @Override
+        public String getCacheKey(Uri uri) {
+            return uri.buildUpon().clearQuery().fragment(null).build().toString();
+        }
+    };
+
+    // SimpleCache allows a single instance per directory.
+    private static final Map<File, SimpleCache> sCaches = new HashMap<>();
+
+    private final SimpleCache mCache;
+    private final DataSource.Factory mUpstreamFactory;
+    private final CacheKeyPolicy mCacheKeyPolicy;
+
+    private final Object mStatsLock = new Object();
+    private int mHits;
+    private int mMisses;
+    private long mBytesFromCache;
+    private long mBytesFromUpstream;
+
+    /**
+     * @param cacheDir Where to keep the cache. The size of the first factory created for a
+     *     directory bounds the cache for the life of the process.
+     * @param maxCacheBytes The size the cache is trimmed to, least recently used first
+     * @param upstreamFactory Creates the sources that cache misses are read from
+     * @param cacheKeyPolicy Decides which requests share a cache entry
+     */
+    public CachingDataSourceFactory(File cacheDir, long maxCacheBytes,
+            DataSource.Factory upstreamFactory, CacheKeyPolicy cacheKeyPolicy) {
+        mCache = getCache(cacheDir, maxCacheBytes);
+        mUpstreamFactory = upstreamFactory;
+        mCacheKeyPolicy = cacheKeyPolicy;
+    }
+
+    /**
+     * Creates a factory that caches in the app's cache directory.
+     */
+    public CachingDataSourceFactory(Context context, long maxCacheBytes,
+            DataSource.Factory upstreamFactory) {
+        this(new File(context.getCacheDir(), "media"), maxCacheBytes, upstreamFactory, FULL_URL);
+    }
+
+    private static SimpleCache getCache(File cacheDir, long maxCacheBytes) {
+        synchronized (sCaches) {
+            SimpleCache cache = sCaches.get(cacheDir);
+            if (cache == null) {
+                cache = new SimpleCache(cacheDir,
+                        new LeastRecentlyUsedCacheEvictor(maxCacheBytes));
+                sCaches.put(cacheDir, cache);
+            }
+            return cache;
+        }
+    }
+
+    @Override
+    public DataSource createDataSource() {
+        return new CountingDataSource();
+    }
+
+    public int getHitCount() {
+        synchronized (mStatsLock) {
+            return mHits;
+        }
+    }
+
+    public int getMissCount() {
+        synchronized (mStatsLock) {
+            return mMisses;
+        }
+    }
+
+    /** Returns how many bytes were served from the cache instead of the network. */
+    public long getBytesSaved() {
+        synchronized (mStatsLock) {
+            return mBytesFromCache;
+        }
+    }
+
+    public long getBytesFromUpstream() {
+        synchronized (mStatsLock) {
+            return mBytesFromUpstream;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (mStatsLock) {
+            return "hits=" + mHits + " misses=" + mMisses + " bytesSaved=" + mBytesFromCache
+                    + " bytesFromUpstream=" + mBytesFromUpstream;
+        }
+    }
+
+    /**
+     * Applies the cache key policy and counts how much of each read came from the cache.
+     */
+    private final class CountingDataSource implements DataSource {
+        private final CacheDataSource mCacheDataSource;
+        private long mBytesRead;
+        private long mCachedBytesRead;
+
+        CountingDataSource() {
+            mCacheDataSource = new CacheDataSource(
+                    mCache,
+                    mUpstreamFactory.createDataSource(),
+                    new FileDataSource(),
+                    new CacheDataSink(mCache, MAX_CACHE_FILE_BYTES),
+                    CacheDataSource.FLAG_BLOCK_ON_CACHE
+                            | CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                    new CacheDataSource.EventListener() {
+                        @Override
+                        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                            mCachedBytesRead += cachedBytesRead;
+                        }
+                    });
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            mBytesRead = 0;
+            mCachedBytesRead = 0;
+            DataSpec keyedDataSpec = new DataSpec(
+                    dataSpec.uri,
+                    dataSpec.postBody,
+                    dataSpec.absoluteStreamPosition,
+                    dataSpec.position,
+                    dataSpec.length,
+                    mCacheKeyPolicy.getCacheKey(dataSpec.uri),
+                    dataSpec.flags);
+            return mCacheDataSource.open(keyedDataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            int read = mCacheDataSource.read(buffer, offset, readLength);
+            if (read > 0) {
+                mBytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public Uri getUri() {
+            return mCacheDataSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                mCacheDataSource.close();
+            } finally {
+                // Cached bytes are reported when the cache source is closed.
+                if (mBytesRead > 0) {
+                    long fromCache = Math.min(mCachedBytesRead, mBytesRead);
+                    synchronized (mStatsLock) {
+                        if (fromCache == mBytesRead) {
+                            mHits++;
+                        } else {
+                            mMisses++;
+                        }
+                        mBytesFromCache += fromCache;
+                        mBytesFromUpstream += mBytesRead - fromCache;
+                    }
+                }
+                mBytesRead = 0;
+                mCachedBytesRead = 0;
+            }
+        }
+    }
+}
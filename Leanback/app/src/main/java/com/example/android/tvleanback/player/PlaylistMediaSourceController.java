@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.tvleanback.model.Playlist;
+import com.example.android.tvleanback.model.Video;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.DynamicConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a {@link Playlist} through a single prepared player. The playlist is mirrored into a
+ * {@link DynamicConcatenatingMediaSource}, so moving between videos is a seek to another window
+ * rather than a new {@code prepare()}, and the player can buffer the next video ahead of the end
+ * of the current one. While a video plays, the start of the next one is read through the same
+ * {@link DataSource.Factory}, which warms up the connection to it and, with a caching factory
+ * such as {@link CachingDataSourceFactory}, has its first bytes ready on disk.
+ */
+public class PlaylistMediaSourceController {
+    private static final String TAG = "PlaylistController";
+
+    // How much of the next video to read ahead, enough to cover the container header.
+    private static final long PRELOAD_BYTES = 512 * 1024;
+
+    /** Notified when the player moves to another video in the playlist. */
+    public interface Listener {
+        void onVideoChanged(Video video);
+    }
+
+    private final SimpleExoPlayer mPlayer;
+    private final DataSource.Factory mDataSourceFactory;
+    private final Playlist mPlaylist;
+    private final Listener mListener;
+    private final ExecutorService mPreloadExecutor = Executors.newSingleThreadExecutor();
+    private final DynamicConcatenatingMediaSource mMediaSource =
+            new DynamicConcatenatingMediaSource();
+
+    // The videos backing each window of mMediaSource, in order.
+    private final List<Video> mWindows = new ArrayList<>();
+    private Future<?> mPreload;
+    private long mTransitionStartMs = -1;
+    private long mLastTimeToFirstFrameMs = -1;
+
+    public PlaylistMediaSourceController(SimpleExoPlayer player,
+            DataSource.Factory dataSourceFactory, Playlist playlist, Listener listener) {
+        mPlayer = player;
+        mDataSourceFactory = dataSourceFactory;
+        mPlaylist = playlist;
+        mListener = listener;
+        mPlayer.addListener(new Player.DefaultEventListener() {
+            @Override
+            public void onPositionDiscontinuity(int reason) {
+                onWindowMaybeChanged();
+            }
+        });
+        mPlayer.addVideoListener(new SimpleExoPlayer.VideoListener() {
+            @Override
+            public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees,
+                    float pixelWidthHeightRatio) {
+            }
+
+            @Override
+            public void onRenderedFirstFrame() {
+                if (mTransitionStartMs >= 0) {
+                    mLastTimeToFirstFrameMs = SystemClock.elapsedRealtime() - mTransitionStartMs;
+                    mTransitionStartMs = -1;
+                    Log.d(TAG, "Time to first frame: " + mLastTimeToFirstFrameMs + "ms");
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts playing the given video, replacing whatever was playing. Until
+     * {@link #syncWithPlaylist()} is called it is the only window of the media source.
+     */
+    public void prepare(Video video) {
+        for (int i = mWindows.size() - 1; i >= 0; i--) {
+            mMediaSource.removeMediaSource(i);
+        }
+        mWindows.clear();
+        mWindows.add(video);
+        mMediaSource.addMediaSource(buildMediaSource(video));
+        mTransitionStartMs = SystemClock.elapsedRealtime();
+        mPlayer.prepare(mMediaSource);
+    }
+
+    /**
+     * Mirrors the playlist into the media source around the window that is playing, without
+     * interrupting it. Does nothing if the playlist does not contain the playing video.
+     */
+    public void syncWithPlaylist() {
+        Video playing = getPlayingVideo();
+        if (playing == null) {
+            return;
+        }
+        int playlistIndex = -1;
+        for (int i = 0; i < mPlaylist.size(); i++) {
+            if (mPlaylist.get(i).id == playing.id) {
+                playlistIndex = i;
+                break;
+            }
+        }
+        if (playlistIndex < 0 || isMirrored()) {
+            return;
+        }
+
+        // Drop every window but the playing one, then rebuild both sides from the playlist.
+        int windowIndex = mPlayer.getCurrentWindowIndex();
+        for (int i = mWindows.size() - 1; i > windowIndex; i--) {
+            mMediaSource.removeMediaSource(i);
+            mWindows.remove(i);
+        }
+        for (int i = 0; i < windowIndex; i++) {
+            mMediaSource.removeMediaSource(0);
+            mWindows.remove(0);
+        }
+        for (int i = 0; i < playlistIndex; i++) {
+            Video video = mPlaylist.get(i);
+            mMediaSource.addMediaSource(i, buildMediaSource(video));
+            mWindows.add(i, video);
+        }
+        for (int i = playlistIndex + 1; i < mPlaylist.size(); i++) {
+            Video video = mPlaylist.get(i);
+            mMediaSource.addMediaSource(buildMediaSource(video));
+            mWindows.add(video);
+        }
+        mPlaylist.setCurrentPosition(playlistIndex);
+        preloadNext(playlistIndex);
+    }
+
+    /** Skips to the next video in the playlist, if there is one. */
+    public void next() {
+        skipTo(mPlaylist.getCurrentPosition() + 1);
+    }
+
+    /** Skips to the previous video in the playlist, if there is one. */
+    public void previous() {
+        skipTo(mPlaylist.getCurrentPosition() - 1);
+    }
+
+    /**
+     * Returns how long the last skip took from the request to its first rendered frame, or -1 if
+     * no skip has rendered a frame yet.
+     */
+    public long getLastTimeToFirstFrameMs() {
+        return mLastTimeToFirstFrameMs;
+    }
+
+    /** Stops any read-ahead. The player itself is released by its owner. */
+    public void release() {
+        if (mPreload != null) {
+            mPreload.cancel(true);
+        }
+        mPreloadExecutor.shutdownNow();
+    }
+
+    private void skipTo(int index) {
+        if (!isMirrored() || index < 0 || index >= mWindows.size()) {
+            return;
+        }
+        mTransitionStartMs = SystemClock.elapsedRealtime();
+        mPlayer.seekTo(index, 0);
+    }
+
+    private boolean isMirrored() {
+        if (mWindows.size() != mPlaylist.size()) {
+            return false;
+        }
+        for (int i = 0; i < mWindows.size(); i++) {
+            if (mWindows.get(i).id != mPlaylist.get(i).id) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Video getPlayingVideo() {
+        int windowIndex = mPlayer.getCurrentWindowIndex();
+        return windowIndex < mWindows.size() ? mWindows.get(windowIndex) : null;
+    }
+
+    private void onWindowMaybeChanged() {
+        if (!isMirrored()) {
+            return;
+        }
+        int windowIndex = mPlayer.getCurrentWindowIndex();
+        if (windowIndex == mPlaylist.getCurrentPosition()) {
+            return;
+        }
+        mPlaylist.setCurrentPosition(windowIndex);
+        mListener.onVideoChanged(mWindows.get(windowIndex));
+        preloadNext(windowIndex);
+    }
+
+    private void preloadNext(int windowIndex) {
+        if (mPreload != null) {
+            mPreload.cancel(true);
+            mPreload = null;
+        }
+        if (windowIndex + 1 >= mWindows.size()) {
+            return;
+        }
+        final Uri uri = Uri.parse(mWindows.get(windowIndex + 1).videoUrl);
+        mPreload = mPreloadExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                DataSource dataSource = mDataSourceFactory.createDataSource();
+                byte[] buffer = new byte[16 * 1024];
+                try {
+                    dataSource.open(new DataSpec(uri, 0, PRELOAD_BYTES, null));
+                    while (!Thread.currentThread().isInterrupted()
+                            && dataSource.read(buffer, 0, buffer.length) != -1) {
+                        // Only reading ahead.
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not preload " + uri, e);
+                } finally {
+                    try {
+                        dataSource.close();
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not close preload of " + uri, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private MediaSource buildMediaSource(Video video) {
+        return new ExtractorMediaSource(
+                Uri.parse(video.videoUrl),
+                mDataSourceFactory,
+                new DefaultExtractorsFactory(),
+                null,
+                null);
+    }
+}
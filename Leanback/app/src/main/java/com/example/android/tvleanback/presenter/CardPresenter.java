@@ -70,9 +70,17 @@ public class CardPresenter extends Presenter {
 
     @Override
     public void onBindViewHolder(Presenter.ViewHolder viewHolder, Object item) {
+        ImageCardView cardView = (ImageCardView) viewHolder.view;
+        if (item == null) {
+            // The video is still being read, it is bound again once it arrives.
+            cardView.setTitleText(null);
+            cardView.setContentText(null);
+            Glide.with(cardView.getContext()).clear(cardView.getMainImageView());
+            cardView.setMainImage(mDefaultCardImage);
+            return;
+        }
         Video video = (Video) item;
 
-        ImageCardView cardView = (ImageCardView) viewHolder.view;
         cardView.setTitleText(video.title);
         cardView.setContentText(video.studio);
 
@@ -25,11 +25,15 @@ import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.service.notification.StatusBarNotification;
 import androidx.recommendation.app.ContentRecommendation;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
 import com.example.android.tvleanback.BuildConfig;
 import com.example.android.tvleanback.R;
 import com.example.android.tvleanback.data.VideoContract;
@@ -37,7 +41,19 @@ import com.example.android.tvleanback.model.Video;
 import com.example.android.tvleanback.model.VideoCursorMapper;
 import com.example.android.tvleanback.ui.VideoDetailsActivity;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /*
  * This class builds up to MAX_RECOMMENDATIONS of ContentRecommendations and defines what happens
@@ -46,7 +62,12 @@ import java.util.concurrent.ExecutionException;
 public class UpdateRecommendationsService extends IntentService {
     private static final String TAG = "RecommendationService";
     private static final int MAX_RECOMMENDATIONS = 3;
-    private static final VideoCursorMapper mVideoCursorMapper = new VideoCursorMapper();
+    private static final long IMAGE_TIMEOUT_MS = 10000;
+
+    // Maps the notification id of each posted recommendation to what it shows. This outlives the
+    // service so that the next refresh can keep recommendations that have not changed.
+    private static final Map<Integer, String> sPostedRecommendations = new HashMap<>();
+    private final VideoCursorMapper mVideoCursorMapper = new VideoCursorMapper();
 
     private NotificationManager mNotifManager;
 
@@ -70,56 +91,202 @@ public class UpdateRecommendationsService extends IntentService {
         if (!sharedPreferences.getBoolean(getString(R.string.pref_key_recommendations), true)) {
             Log.d(TAG, "Recommendations disabled");
             mNotifManager.cancelAll();
+            synchronized (sPostedRecommendations) {
+                sPostedRecommendations.clear();
+            }
             return;
         }
         Resources res = getResources();
         int cardWidth = res.getDimensionPixelSize(R.dimen.card_width);
         int cardHeight = res.getDimensionPixelSize(R.dimen.card_height);
-        ContentRecommendation.Builder builder = new ContentRecommendation.Builder()
-                .setBadgeIcon(R.drawable.videos_by_google_icon);
 
-        Cursor cursor = getContentResolver().query(
+        long start = SystemClock.elapsedRealtime();
+        forgetDismissedRecommendations();
+        List<Video> videos = loadRandomVideos();
+        long selected = SystemClock.elapsedRealtime();
+
+        // Start every image load before waiting on any of them, so that the images are fetched
+        // concurrently on Glide's bounded pool rather than one after another. Videos that are
+        // already being recommended with the same content are left as they are.
+        Map<Integer, Video> recommended = new LinkedHashMap<>();
+        Map<Integer, FutureTarget<Bitmap>> images = new LinkedHashMap<>();
+        int reused = 0;
+        for (Video video : videos) {
+            int id = Long.valueOf(video.id).hashCode();
+            recommended.put(id, video);
+            synchronized (sPostedRecommendations) {
+                if (getContentKey(video).equals(sPostedRecommendations.get(id))) {
+                    reused++;
+                    continue;
+                }
+            }
+            images.put(id, Glide.with(getApplication())
+                    .asBitmap()
+                    .load(video.cardImageUrl)
+                    .submit(cardWidth, cardHeight)); // Only use for synchronous .get()
+        }
+
+        int posted = 0;
+        long imageTime = 0;
+        long notifyTime = 0;
+        for (Map.Entry<Integer, FutureTarget<Bitmap>> image : images.entrySet()) {
+            int id = image.getKey();
+            Video video = recommended.get(id);
+            Bitmap bitmap;
+            long imageStart = SystemClock.elapsedRealtime();
+            try {
+                // A slow or broken image only costs its own recommendation.
+                bitmap = image.getValue().get(IMAGE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted while creating recommendations.", e);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                Log.e(TAG, "Could not create recommendation for " + video.title, e);
+                recommended.remove(id);
+                continue;
+            } finally {
+                imageTime += SystemClock.elapsedRealtime() - imageStart;
+            }
+
+            ContentRecommendation.Builder builder = new ContentRecommendation.Builder()
+                    .setBadgeIcon(R.drawable.videos_by_google_icon)
+                    .setIdTag("Video" + id)
+                    .setTitle(video.title)
+                    .setText(getString(R.string.popular_header))
+                    .setContentIntentData(ContentRecommendation.INTENT_TYPE_ACTIVITY,
+                            buildPendingIntent(video, id), 0, null)
+                    .setContentImage(bitmap);
+
+            // Create an object holding all the information used to recommend the content.
+            ContentRecommendation rec = builder.build();
+            Notification notification = rec.getNotificationObject(getApplicationContext());
+
+            if (BuildConfig.DEBUG) Log.d(TAG, "Recommending video " + video.title);
+
+            // Recommend the content by publishing the notification.
+            long notifyStart = SystemClock.elapsedRealtime();
+            mNotifManager.notify(id, notification);
+            notifyTime += SystemClock.elapsedRealtime() - notifyStart;
+            synchronized (sPostedRecommendations) {
+                sPostedRecommendations.put(id, getContentKey(video));
+            }
+            posted++;
+        }
+        for (FutureTarget<Bitmap> image : images.values()) {
+            Glide.with(getApplication()).clear(image);
+        }
+
+        // Withdraw recommendations that were not picked this time.
+        synchronized (sPostedRecommendations) {
+            Iterator<Integer> ids = sPostedRecommendations.keySet().iterator();
+            while (ids.hasNext()) {
+                int id = ids.next();
+                if (!recommended.containsKey(id)) {
+                    mNotifManager.cancel(id);
+                    ids.remove();
+                }
+            }
+        }
+
+        Log.d(TAG, "Posted " + posted + " and kept " + reused + " recommendations: select "
+                + (selected - start) + "ms, images " + imageTime + "ms, notify "
+                + notifyTime + "ms, total " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * Drops the recommendations that are no longer showing, such as the ones the user dismissed,
+     * so that they are posted again rather than kept. Before M the posted notifications cannot be
+     * listed, so everything is posted again.
+     */
+    private void forgetDismissedRecommendations() {
+        synchronized (sPostedRecommendations) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                sPostedRecommendations.clear();
+                return;
+            }
+            Set<Integer> active = new HashSet<>();
+            for (StatusBarNotification notification : mNotifManager.getActiveNotifications()) {
+                active.add(notification.getId());
+            }
+            sPostedRecommendations.keySet().retainAll(active);
+        }
+    }
+
+    /**
+     * Picks up to MAX_RECOMMENDATIONS videos at random. Only the row ids are scanned to sample
+     * from, which avoids sorting the whole table by RANDOM(), and then only the chosen rows are
+     * read.
+     */
+    private List<Video> loadRandomVideos() {
+        long[] sample = new long[MAX_RECOMMENDATIONS];
+        int sampled = 0;
+        Cursor idCursor = getContentResolver().query(
                 VideoContract.VideoEntry.CONTENT_URI,
-                null, // projection
+                new String[]{VideoContract.VideoEntry._ID}, // projection
                 null, // selection
                 null, // selection clause
-                "RANDOM() LIMIT " + MAX_RECOMMENDATIONS // sort order
+                null // sort order
         );
+        if (idCursor == null) {
+            return Collections.emptyList();
+        }
+        try {
+            // Reservoir sampling keeps every row equally likely to be picked.
+            Random random = new Random();
+            int seen = 0;
+            while (idCursor.moveToNext()) {
+                if (sampled < sample.length) {
+                    sample[sampled++] = idCursor.getLong(0);
+                } else {
+                    int slot = random.nextInt(seen + 1);
+                    if (slot < sample.length) {
+                        sample[slot] = idCursor.getLong(0);
+                    }
+                }
+                seen++;
+            }
+        } finally {
+            idCursor.close();
+        }
+        if (sampled == 0) {
+            return Collections.emptyList();
+        }
 
-        if (cursor != null && cursor.moveToNext()) {
-            try {
-                do {
-                    Video video = (Video) mVideoCursorMapper.convert(cursor);
-                    int id = Long.valueOf(video.id).hashCode();
-
-                    builder.setIdTag("Video" + id)
-                            .setTitle(video.title)
-                            .setText(getString(R.string.popular_header))
-                            .setContentIntentData(ContentRecommendation.INTENT_TYPE_ACTIVITY,
-                                    buildPendingIntent(video, id), 0, null);
-
-                    Bitmap bitmap = Glide.with(getApplication())
-                            .asBitmap()
-                            .load(video.cardImageUrl)
-                            .submit(cardWidth, cardHeight) // Only use for synchronous .get()
-                            .get();
-                    builder.setContentImage(bitmap);
-
-                    // Create an object holding all the information used to recommend the content.
-                    ContentRecommendation rec = builder.build();
-                    Notification notification = rec.getNotificationObject(getApplicationContext());
-
-                    if (BuildConfig.DEBUG) Log.d(TAG, "Recommending video " + video.title);
-
-                    // Recommend the content by publishing the notification.
-                    mNotifManager.notify(id, notification);
-                } while (cursor.moveToNext());
-            } catch (InterruptedException | ExecutionException e) {
-                Log.e(TAG, "Could not create recommendation.", e);
-            } finally {
-                cursor.close();
+        StringBuilder selection = new StringBuilder(VideoContract.VideoEntry._ID).append(" IN (");
+        String[] selectionArgs = new String[sampled];
+        for (int i = 0; i < sampled; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i] = Long.toString(sample[i]);
+        }
+        selection.append(')');
+
+        List<Video> videos = new ArrayList<>(sampled);
+        Cursor cursor = getContentResolver().query(
+                VideoContract.VideoEntry.CONTENT_URI,
+                VideoContract.VideoEntry.CARD_PROJECTION, // projection
+                selection.toString(), // selection
+                selectionArgs, // selection clause
+                null // sort order
+        );
+        if (cursor == null) {
+            return videos;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                videos.add((Video) mVideoCursorMapper.convert(cursor));
             }
+        } finally {
+            cursor.close();
         }
+        return videos;
+    }
+
+    /**
+     * Identifies what a recommendation shows, so that an unchanged one is not rebuilt.
+     */
+    private static String getContentKey(Video video) {
+        return video.title + '\n' + video.cardImageUrl;
     }
 
     private Intent buildPendingIntent(Video video, int id) {
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.tvleanback.ui;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.leanback.database.CursorMapper;
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.leanback.widget.Presenter;
+
+import com.example.android.tvleanback.data.VideoContract;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * An ObjectAdapter over the videos of one category. The size comes from the category's count and
+ * videos are read a page at a time when the row asks for them, so the cost of an adapter does not
+ * depend on how many videos the category holds. A page is one range read of the
+ * (category, _id) index, done off the main thread. Until its page arrives an item is null, which
+ * the presenter shows as an empty card.
+ */
+public class CategoryRowObjectAdapter extends ObjectAdapter {
+    private static final int PAGE_SIZE = 25;
+    private static final int MAX_PAGES = 4;
+
+    // Shared by every row, so that pages are read one at a time in the order they are asked for.
+    private static final Executor sPageLoader = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final LruCache<Integer, Object[]> mPages = new LruCache<>(MAX_PAGES);
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    private final ContentResolver mContentResolver;
+    private final String[] mProjection;
+    private CursorMapper mMapper;
+    private String mCategory;
+    private int mCount;
+    // Changes whenever the pages read so far become stale, so late results can be dropped.
+    private int mGeneration;
+
+    public CategoryRowObjectAdapter(Presenter presenter, ContentResolver contentResolver,
+            String[] projection) {
+        super(presenter);
+        mContentResolver = contentResolver;
+        mProjection = projection;
+    }
+
+    public void setMapper(CursorMapper mapper) {
+        mMapper = mapper;
+        invalidatePages();
+        notifyChanged();
+    }
+
+    /**
+     * Points this adapter at the given category, which holds {@code count} videos. Pages read
+     * before are dropped, so this is also how a reload of the counts is applied.
+     */
+    public void changeCategory(String category, int count) {
+        mCategory = category;
+        mCount = category == null ? 0 : count;
+        invalidatePages();
+        notifyChanged();
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        int page = index / PAGE_SIZE;
+        Object[] items = mPages.get(page);
+        if (items == null) {
+            loadPage(page);
+            return null;
+        }
+        int item = index % PAGE_SIZE;
+        return item < items.length ? items[item] : null;
+    }
+
+    private void invalidatePages() {
+        mGeneration++;
+        mPages.evictAll();
+        mLoadingPages.clear();
+    }
+
+    private void loadPage(final int page) {
+        if (!mLoadingPages.add(page)) {
+            return;
+        }
+        final int generation = mGeneration;
+        final String category = mCategory;
+        final CursorMapper mapper = mMapper;
+        sPageLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Object[] items = readPage(category, mapper, page);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, items);
+                    }
+                });
+            }
+        });
+    }
+
+    private Object[] readPage(String category, CursorMapper mapper, int page) {
+        Uri uri = VideoContract.VideoEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(VideoContract.PARAM_LIMIT,
+                        page * PAGE_SIZE + "," + PAGE_SIZE)
+                .build();
+        Cursor cursor = mContentResolver.query(
+                uri,
+                mProjection,
+                VideoContract.VideoEntry.COLUMN_CATEGORY + " = ?",
+                new String[]{category},
+                VideoContract.VideoEntry._ID);
+        List<Object> items = new ArrayList<>(PAGE_SIZE);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    items.add(mapper.convert(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return items.toArray();
+    }
+
+    private void onPageLoaded(int generation, int page, Object[] items) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoadingPages.remove(page);
+        int offset = page * PAGE_SIZE;
+        if (offset >= mCount) {
+            return;
+        }
+        mPages.put(page, items);
+
+        // Rows deleted since the count was read end the category early. Drop the items past the
+        // end until the reloaded count arrives through changeCategory().
+        int end = offset + items.length;
+        if (items.length < PAGE_SIZE && end < mCount) {
+            int removed = mCount - end;
+            mCount = end;
+            for (int later = page + 1; later * PAGE_SIZE < end + removed; later++) {
+                mPages.remove(later);
+            }
+            if (items.length > 0) {
+                notifyItemRangeChanged(offset, items.length);
+            }
+            notifyItemRangeRemoved(end, removed);
+        } else {
+            notifyItemRangeChanged(offset, Math.min(PAGE_SIZE, mCount - offset));
+        }
+    }
+}
@@ -27,7 +27,6 @@ import android.os.Handler;
 import androidx.leanback.app.BackgroundManager;
 import androidx.leanback.app.BrowseSupportFragment;
 import androidx.leanback.widget.ArrayObjectAdapter;
-import androidx.leanback.widget.CursorObjectAdapter;
 import androidx.leanback.widget.HeaderItem;
 import androidx.leanback.widget.ImageCardView;
 import androidx.leanback.widget.ListRow;
@@ -41,9 +40,9 @@ import androidx.leanback.widget.RowPresenter;
 import androidx.core.app.ActivityOptionsCompat;
 import androidx.loader.app.LoaderManager;
 import androidx.core.content.ContextCompat;
-import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
@@ -51,7 +50,9 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.SimpleTarget;
 import com.bumptech.glide.request.transition.Transition;
+import com.example.android.tvleanback.BuildConfig;
 import com.example.android.tvleanback.R;
+import com.example.android.tvleanback.data.CategoryCursorLoader;
 import com.example.android.tvleanback.data.FetchVideoService;
 import com.example.android.tvleanback.data.VideoContract;
 import com.example.android.tvleanback.model.Video;
@@ -69,6 +70,8 @@ import java.util.Map;
  */
 public class MainFragment extends BrowseSupportFragment
         implements LoaderManager.LoaderCallbacks<Cursor> {
+    private static final String TAG = "MainFragment";
+    private static final boolean DEBUG = BuildConfig.DEBUG;
 
     private static final int BACKGROUND_UPDATE_DELAY = 300;
     private final Handler mHandler = new Handler();
@@ -78,21 +81,22 @@ public class MainFragment extends BrowseSupportFragment
     private Runnable mBackgroundTask;
     private Uri mBackgroundURI;
     private BackgroundManager mBackgroundManager;
+    private BackgroundPrefetcher mBackgroundPrefetcher;
     private LoaderManager mLoaderManager;
     private static final int CATEGORY_LOADER = 123; // Unique ID for Category Loader.
 
-    // Maps a Loader Id to its CursorObjectAdapter.
-    private Map<Integer, CursorObjectAdapter> mVideoCursorAdapters;
+    // Maps a category to the adapter for its row.
+    private Map<String, CategoryRowObjectAdapter> mVideoCursorAdapters;
 
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
 
-        // Create a list to contain all the CursorObjectAdapters.
+        // Create a map to contain all the row adapters.
         // Each adapter is used to render a specific row of videos in the MainFragment.
         mVideoCursorAdapters = new HashMap<>();
 
-        // Start loading the categories from the database.
+        // Start loading the videos, grouped by category, from the database.
         mLoaderManager = LoaderManager.getInstance(this);
         mLoaderManager.initLoader(CATEGORY_LOADER, null, this);
     }
@@ -114,6 +118,11 @@ public class MainFragment extends BrowseSupportFragment
         mCategoryRowAdapter = new ArrayObjectAdapter(new ListRowPresenter());
         setAdapter(mCategoryRowAdapter);
 
+        if (savedInstanceState == null) {
+            // Bring the catalog up to date, this also fills an empty database. It is cheap when
+            // nothing has changed.
+            syncVideos();
+        }
         updateRecommendations();
     }
 
@@ -121,6 +130,11 @@ public class MainFragment extends BrowseSupportFragment
     public void onDestroy() {
         mHandler.removeCallbacks(mBackgroundTask);
         mBackgroundManager = null;
+        if (DEBUG) {
+            Log.d(TAG, "Background prefetch hits: " + mBackgroundPrefetcher.getHitCount()
+                    + ", misses: " + mBackgroundPrefetcher.getMissCount());
+        }
+        mBackgroundPrefetcher.clear();
         super.onDestroy();
     }
 
@@ -137,6 +151,14 @@ public class MainFragment extends BrowseSupportFragment
         mBackgroundTask = new UpdateBackgroundTask();
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
+        mBackgroundPrefetcher = new BackgroundPrefetcher(getActivity(), mMetrics.widthPixels,
+                mMetrics.heightPixels,
+                new BackgroundPrefetcher.ImageUrlProvider() {
+                    @Override
+                    public String getImageUrl(Object item) {
+                        return item instanceof Video ? ((Video) item).bgImageUrl : null;
+                    }
+                });
     }
 
     private void setupUIElements() {
@@ -201,6 +223,12 @@ public class MainFragment extends BrowseSupportFragment
         mHandler.postDelayed(mBackgroundTask, BACKGROUND_UPDATE_DELAY);
     }
 
+    private void syncVideos() {
+        // Start an Intent to fetch the videos.
+        Intent serviceIntent = new Intent(getActivity(), FetchVideoService.class);
+        getActivity().startService(serviceIntent);
+    }
+
     private void updateRecommendations() {
         Intent recommendationIntent = new Intent(getActivity(), UpdateRecommendationsService.class);
         getActivity().startService(recommendationIntent);
@@ -208,109 +236,60 @@ public class MainFragment extends BrowseSupportFragment
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if (id == CATEGORY_LOADER) {
-            return new CursorLoader(
-                    getContext(),
-                    VideoContract.VideoEntry.CONTENT_URI, // Table to query
-                    new String[]{"DISTINCT " + VideoContract.VideoEntry.COLUMN_CATEGORY},
-                    // Only categories
-                    null, // No selection clause
-                    null, // No selection arguments
-                    null  // Default sort order
-            );
-        } else {
-            // Assume it is for a video.
-            String category = args.getString(VideoContract.VideoEntry.COLUMN_CATEGORY);
-
-            // This just creates a CursorLoader that gets all videos.
-            return new CursorLoader(
-                    getContext(),
-                    VideoContract.VideoEntry.CONTENT_URI, // Table to query
-                    null, // Projection to return - null means return all fields
-                    VideoContract.VideoEntry.COLUMN_CATEGORY + " = ?", // Selection clause
-                    new String[]{category},  // Select based on the category id.
-                    null // Default sort order
-            );
-        }
+        // A single query returns the categories and their sizes, and each row of the browse
+        // screen pages in its own videos when it is shown.
+        return new CategoryCursorLoader(getContext());
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null && data.moveToFirst()) {
-            final int loaderId = loader.getId();
-
-            if (loaderId == CATEGORY_LOADER) {
-
-                // Every time we have to re-get the category loader, we must re-create the sidebar.
-                mCategoryRowAdapter.clear();
-
-                // Iterate through each category entry and add it to the ArrayAdapter.
-                while (!data.isAfterLast()) {
-
-                    int categoryIndex =
-                            data.getColumnIndex(VideoContract.VideoEntry.COLUMN_CATEGORY);
-                    String category = data.getString(categoryIndex);
+        if (data != null && data.getCount() > 0) {
+            CategoryCursorLoader.CategoryCursor cursor =
+                    (CategoryCursorLoader.CategoryCursor) data;
 
-                    // Create header for this category.
-                    HeaderItem header = new HeaderItem(category);
-
-                    int videoLoaderId = category.hashCode(); // Create unique int from category.
-                    CursorObjectAdapter existingAdapter = mVideoCursorAdapters.get(videoLoaderId);
-                    if (existingAdapter == null) {
-
-                        // Map video results from the database to Video objects.
-                        CursorObjectAdapter videoCursorAdapter =
-                                new CursorObjectAdapter(new CardPresenter());
-                        videoCursorAdapter.setMapper(new VideoCursorMapper());
-                        mVideoCursorAdapters.put(videoLoaderId, videoCursorAdapter);
-
-                        ListRow row = new ListRow(header, videoCursorAdapter);
-                        mCategoryRowAdapter.add(row);
-
-                        // Start loading the videos from the database for a particular category.
-                        Bundle args = new Bundle();
-                        args.putString(VideoContract.VideoEntry.COLUMN_CATEGORY, category);
-                        mLoaderManager.initLoader(videoLoaderId, args, this);
-                    } else {
-                        ListRow row = new ListRow(header, existingAdapter);
-                        mCategoryRowAdapter.add(row);
-                    }
+            // Every time the videos are reloaded, we must re-create the sidebar.
+            mCategoryRowAdapter.clear();
 
-                    data.moveToNext();
+            Map<String, CategoryRowObjectAdapter> adapters = new HashMap<>();
+            for (CategoryCursorLoader.Category category : cursor.getCategories()) {
+                CategoryRowObjectAdapter videoAdapter = mVideoCursorAdapters.get(category.name);
+                if (videoAdapter == null) {
+                    // Map video results from the database to Video objects.
+                    videoAdapter = new CategoryRowObjectAdapter(new CardPresenter(),
+                            getContext().getContentResolver(),
+                            VideoContract.VideoEntry.CARD_PROJECTION); // Only what the cards need
+                    videoAdapter.setMapper(new VideoCursorMapper());
                 }
+                videoAdapter.changeCategory(category.name, category.count);
+                adapters.put(category.name, videoAdapter);
 
-                // Create a row for this special case with more samples.
-                HeaderItem gridHeader = new HeaderItem(getString(R.string.more_samples));
-                GridItemPresenter gridPresenter = new GridItemPresenter(this);
-                ArrayObjectAdapter gridRowAdapter = new ArrayObjectAdapter(gridPresenter);
-                gridRowAdapter.add(getString(R.string.grid_view));
-                gridRowAdapter.add(getString(R.string.guidedstep_first_title));
-                gridRowAdapter.add(getString(R.string.error_fragment));
-                gridRowAdapter.add(getString(R.string.personal_settings));
-                ListRow row = new ListRow(gridHeader, gridRowAdapter);
-                mCategoryRowAdapter.add(row);
-
-                startEntranceTransition(); // TODO: Move startEntranceTransition to after all
-                // cursors have loaded.
-            } else {
-                // The CursorAdapter contains a Cursor pointing to all videos.
-                mVideoCursorAdapters.get(loaderId).changeCursor(data);
+                // Create header for this category.
+                HeaderItem header = new HeaderItem(category.name);
+                mCategoryRowAdapter.add(new ListRow(header, videoAdapter));
             }
-        } else {
-            // Start an Intent to fetch the videos.
-            Intent serviceIntent = new Intent(getActivity(), FetchVideoService.class);
-            getActivity().startService(serviceIntent);
+            mVideoCursorAdapters = adapters;
+
+            // Create a row for this special case with more samples.
+            HeaderItem gridHeader = new HeaderItem(getString(R.string.more_samples));
+            GridItemPresenter gridPresenter = new GridItemPresenter(this);
+            ArrayObjectAdapter gridRowAdapter = new ArrayObjectAdapter(gridPresenter);
+            gridRowAdapter.add(getString(R.string.grid_view));
+            gridRowAdapter.add(getString(R.string.guidedstep_first_title));
+            gridRowAdapter.add(getString(R.string.error_fragment));
+            gridRowAdapter.add(getString(R.string.personal_settings));
+            ListRow row = new ListRow(gridHeader, gridRowAdapter);
+            mCategoryRowAdapter.add(row);
+
+            startEntranceTransition();
         }
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        int loaderId = loader.getId();
-        if (loaderId != CATEGORY_LOADER) {
-            mVideoCursorAdapters.get(loaderId).changeCursor(null);
-        } else {
-            mCategoryRowAdapter.clear();
+        for (CategoryRowObjectAdapter videoAdapter : mVideoCursorAdapters.values()) {
+            videoAdapter.changeCategory(null, 0);
         }
+        mCategoryRowAdapter.clear();
     }
 
     private class UpdateBackgroundTask implements Runnable {
@@ -374,8 +353,24 @@ public class MainFragment extends BrowseSupportFragment
         public void onItemSelected(Presenter.ViewHolder itemViewHolder, Object item,
                 RowPresenter.ViewHolder rowViewHolder, Row row) {
             if (item instanceof Video) {
-                mBackgroundURI = Uri.parse(((Video) item).bgImageUrl);
-                startBackgroundTimer();
+                if (rowViewHolder instanceof ListRowPresenter.ViewHolder) {
+                    ListRowPresenter.ViewHolder listRowViewHolder =
+                            (ListRowPresenter.ViewHolder) rowViewHolder;
+                    mBackgroundPrefetcher.onItemSelected(((ListRow) row).getAdapter(),
+                            listRowViewHolder.getSelectedPosition());
+                }
+
+                String bgImageUrl = ((Video) item).bgImageUrl;
+                Bitmap prefetched = mBackgroundPrefetcher.get(bgImageUrl);
+                if (prefetched != null) {
+                    // Already decoded, so there is nothing to wait for.
+                    mHandler.removeCallbacks(mBackgroundTask);
+                    mBackgroundURI = null;
+                    mBackgroundManager.setBitmap(prefetched);
+                } else {
+                    mBackgroundURI = Uri.parse(bgImageUrl);
+                    startBackgroundTimer();
+                }
             }
 
         }
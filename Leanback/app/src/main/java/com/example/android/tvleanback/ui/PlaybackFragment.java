@@ -19,9 +19,9 @@ package com.example.android.tvleanback.ui;
 import android.annotation.TargetApi;
 import android.content.Intent;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import androidx.leanback.app.VideoFragment;
 import androidx.leanback.app.VideoFragmentGlueHost;
 import androidx.leanback.app.VideoSupportFragment;
@@ -43,19 +43,19 @@ import androidx.loader.app.LoaderManager;
 import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
+import com.example.android.tvleanback.BuildConfig;
 import com.example.android.tvleanback.R;
 import com.example.android.tvleanback.data.VideoContract;
 import com.example.android.tvleanback.model.Playlist;
 import com.example.android.tvleanback.model.Video;
 import com.example.android.tvleanback.model.VideoCursorMapper;
+import com.example.android.tvleanback.player.CachingDataSourceFactory;
+import com.example.android.tvleanback.player.PlaylistMediaSourceController;
 import com.example.android.tvleanback.player.VideoPlayerGlue;
 import com.example.android.tvleanback.presenter.CardPresenter;
 import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.ext.leanback.LeanbackPlayerAdapter;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
-import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
@@ -73,13 +73,18 @@ import static com.example.android.tvleanback.ui.PlaybackFragment.VideoLoaderCall
  */
 public class PlaybackFragment extends VideoSupportFragment {
 
+    private static final String TAG = "PlaybackFragment";
+    private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final int UPDATE_DELAY = 16;
+    private static final long MEDIA_CACHE_BYTES = 200 * 1024 * 1024;
 
     private VideoPlayerGlue mPlayerGlue;
     private LeanbackPlayerAdapter mPlayerAdapter;
     private SimpleExoPlayer mPlayer;
     private TrackSelector mTrackSelector;
     private PlaylistActionListener mPlaylistActionListener;
+    private PlaylistMediaSourceController mPlaylistController;
+    private CachingDataSourceFactory mDataSourceFactory;
 
     private Video mVideo;
     private Playlist mPlaylist;
@@ -155,6 +160,26 @@ public class PlaybackFragment extends VideoSupportFragment {
         mPlayerGlue.setHost(new VideoSupportFragmentGlueHost(this));
         mPlayerGlue.playWhenPrepared();
 
+        // Replaying or seeking back reads from the disk cache instead of the network. The read
+        // ahead of the next video in the playlist lands in the same cache.
+        String userAgent = Util.getUserAgent(getActivity(), "VideoPlayerGlue");
+        mDataSourceFactory = new CachingDataSourceFactory(
+                getActivity(),
+                MEDIA_CACHE_BYTES,
+                new DefaultDataSourceFactory(getActivity(), userAgent));
+        mPlaylistController = new PlaylistMediaSourceController(
+                mPlayer,
+                mDataSourceFactory,
+                mPlaylist,
+                new PlaylistMediaSourceController.Listener() {
+                    @Override
+                    public void onVideoChanged(Video video) {
+                        mVideo = video;
+                        mPlayerGlue.setTitle(video.title);
+                        mPlayerGlue.setSubtitle(video.description);
+                    }
+                });
+
         play(mVideo);
 
         ArrayObjectAdapter mRowsAdapter = initializeRelatedVideosRow();
@@ -163,6 +188,12 @@ public class PlaybackFragment extends VideoSupportFragment {
 
     private void releasePlayer() {
         if (mPlayer != null) {
+            mPlaylistController.release();
+            mPlaylistController = null;
+            if (DEBUG) {
+                Log.d(TAG, "Media cache: " + mDataSourceFactory);
+            }
+            mDataSourceFactory = null;
             mPlayer.release();
             mPlayer = null;
             mTrackSelector = null;
@@ -175,23 +206,12 @@ public class PlaybackFragment extends VideoSupportFragment {
     private void play(Video video) {
         mPlayerGlue.setTitle(video.title);
         mPlayerGlue.setSubtitle(video.description);
-        prepareMediaForPlaying(Uri.parse(video.videoUrl));
+        mPlaylistController.prepare(video);
+        // The playlist may have loaded before the player was created.
+        mPlaylistController.syncWithPlaylist();
         mPlayerGlue.play();
     }
 
-    private void prepareMediaForPlaying(Uri mediaSourceUri) {
-        String userAgent = Util.getUserAgent(getActivity(), "VideoPlayerGlue");
-        MediaSource mediaSource =
-                new ExtractorMediaSource(
-                        mediaSourceUri,
-                        new DefaultDataSourceFactory(getActivity(), userAgent),
-                        new DefaultExtractorsFactory(),
-                        null,
-                        null);
-
-        mPlayer.prepare(mediaSource);
-    }
-
     private ArrayObjectAdapter initializeRelatedVideosRow() {
         /*
          * To add a new row to the mPlayerAdapter and not lose the controls row that is provided by the
@@ -292,7 +312,7 @@ public class PlaybackFragment extends VideoSupportFragment {
             return new CursorLoader(
                     getActivity(),
                     VideoContract.VideoEntry.CONTENT_URI,
-                    null,
+                    VideoContract.VideoEntry.CARD_PROJECTION,
                     VideoContract.VideoEntry.COLUMN_CATEGORY + " = ?",
                     new String[] {category},
                     null);
@@ -317,6 +337,10 @@ public class PlaybackFragment extends VideoSupportFragment {
                     playlist.add(video);
 
                 } while (cursor.moveToNext());
+
+                if (mPlaylistController != null) {
+                    mPlaylistController.syncWithPlaylist();
+                }
             } else if (id == RELATED_VIDEOS_LOADER) {
                 mVideoCursorAdapter.changeCursor(cursor);
             }
@@ -338,12 +362,12 @@ public class PlaybackFragment extends VideoSupportFragment {
 
         @Override
         public void onPrevious() {
-            play(mPlaylist.previous());
+            mPlaylistController.previous();
         }
 
         @Override
         public void onNext() {
-            play(mPlaylist.next());
+            mPlaylistController.next();
         }
     }
 }
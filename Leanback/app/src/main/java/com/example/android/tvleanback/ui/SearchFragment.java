@@ -181,12 +181,11 @@ public class SearchFragment extends SearchSupportFragment
         String query = mQuery;
         return new CursorLoader(
                 getActivity(),
-                VideoContract.VideoEntry.CONTENT_URI,
-                null, // Return all fields.
-                VideoContract.VideoEntry.COLUMN_NAME + " LIKE ? OR " +
-                        VideoContract.VideoEntry.COLUMN_DESC + " LIKE ?",
-                new String[]{"%" + query + "%", "%" + query + "%"},
-                null // Default sort order
+                VideoContract.VideoEntry.SEARCH_URI,
+                null, // Return all suggestion fields.
+                null, // Matching is done by the provider's full-text index.
+                new String[]{query},
+                null // Ranked by the provider.
         );
     }
 
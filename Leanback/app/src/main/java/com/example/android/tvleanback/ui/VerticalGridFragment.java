@@ -98,7 +98,7 @@ public class VerticalGridFragment extends VerticalGridSupportFragment
         return new CursorLoader(
                 getActivity(),
                 VideoContract.VideoEntry.CONTENT_URI,
-                null, // projection
+                VideoContract.VideoEntry.CARD_PROJECTION, // projection
                 null, // selection
                 null, // selection clause
                 null  // sort order
@@ -227,7 +227,7 @@ public class VideoDetailsFragment extends DetailsSupportFragment
                 return new CursorLoader(
                         getActivity(),
                         VideoContract.VideoEntry.CONTENT_URI,
-                        null,
+                        VideoContract.VideoEntry.CARD_PROJECTION,
                         VideoContract.VideoEntry.COLUMN_CATEGORY + " = ?",
                         new String[]{category},
                         null
@@ -239,7 +239,7 @@ public class VideoDetailsFragment extends DetailsSupportFragment
                 return new CursorLoader(
                         getActivity(),
                         VideoContract.VideoEntry.CONTENT_URI,
-                        null,
+                        VideoContract.VideoEntry.CARD_PROJECTION,
                         VideoContract.VideoEntry._ID + " = ?",
                         new String[]{videoId},
                         null
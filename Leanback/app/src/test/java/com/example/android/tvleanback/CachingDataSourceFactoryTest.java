@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.tvleanback;
+
+import android.net.Uri;
+
+import com.example.android.tvleanback.player.CachingDataSourceFactory;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+
+import junit.framework.Assert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads a local file through {@link CachingDataSourceFactory} to check that repeat reads are
+ * served from the disk cache.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = "src/main/AndroidManifest.xml")
+public class CachingDataSourceFactoryTest {
+    private static final int MEDIA_BYTES = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void secondReadIsServedFromCache() throws IOException {
+        File media = mFolder.newFile("media.mp4");
+        FileOutputStream out = new FileOutputStream(media);
+        out.write(new byte[MEDIA_BYTES]);
+        out.close();
+
+        CachingDataSourceFactory factory = new CachingDataSourceFactory(
+                mFolder.newFolder("cache"),
+                10 * 1024 * 1024,
+                new FileDataSourceFactory(),
+                CachingDataSourceFactory.FULL_URL);
+
+        Assert.assertEquals(MEDIA_BYTES, readFully(factory, Uri.fromFile(media)));
+        Assert.assertEquals(0, factory.getHitCount());
+        Assert.assertEquals(1, factory.getMissCount());
+
+        Assert.assertEquals(MEDIA_BYTES, readFully(factory, Uri.fromFile(media)));
+        Assert.assertEquals(1, factory.getHitCount());
+        Assert.assertEquals(MEDIA_BYTES, factory.getBytesSaved());
+        Assert.assertEquals(MEDIA_BYTES, factory.getBytesFromUpstream());
+    }
+
+    private static long readFully(DataSource.Factory factory, Uri uri) throws IOException {
+        DataSource dataSource = factory.createDataSource();
+        byte[] buffer = new byte[8 * 1024];
+        long total = 0;
+        try {
+            dataSource.open(new DataSpec(uri, 0, C.LENGTH_UNSET, null));
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                total += read;
+            }
+        } finally {
+            dataSource.close();
+        }
+        return total;
+    }
+}
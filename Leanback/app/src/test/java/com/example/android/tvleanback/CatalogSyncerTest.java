@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.tvleanback;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.tvleanback.data.CatalogSyncer;
+import com.example.android.tvleanback.data.VideoContract;
+import com.example.android.tvleanback.data.VideoDbBuilder;
+import com.example.android.tvleanback.data.VideoProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+/**
+ * Runs {@link CatalogSyncer} against a local HTTP server that serves fixture feeds.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = "src/main/AndroidManifest.xml")
+public class CatalogSyncerTest {
+    private static final String FEED_V1 = "{\"googlevideos\": [{"
+            + "\"category\": \"Google+\", \"videos\": ["
+            + "{\"title\": \"New Dad\", \"sources\": [\"http://www.example.com/new_dad.mp4\"]},"
+            + "{\"title\": \"Pet Dog\", \"sources\": [\"http://www.example.com/pet_dog.mp4\"]}"
+            + "]}]}";
+    private static final String FEED_V2 = "{\"googlevideos\": [{"
+            + "\"category\": \"Google+\", \"videos\": ["
+            + "{\"title\": \"New Dad\", \"sources\": [\"http://www.example.com/new_dad.mp4\"]},"
+            + "{\"title\": \"Pet Cat\", \"sources\": [\"http://www.example.com/pet_cat.mp4\"]}"
+            + "]}, {"
+            + "\"category\": \"Demo Slam\", \"videos\": ["
+            + "{\"title\": \"Demo\", \"sources\": [\"http://www.example.com/demo.mp4\"]}"
+            + "]}]}";
+    // FEED_V1 with New Dad retitled and Pet Dog dropped.
+    private static final String FEED_CHANGED = "{\"googlevideos\": [{"
+            + "\"category\": \"Google+\", \"videos\": ["
+            + "{\"title\": \"New Dad Returns\", "
+            + "\"sources\": [\"http://www.example.com/new_dad.mp4\"]}"
+            + "]}]}";
+
+    private HttpServer mServer;
+    private String mFeed;
+    private String mEtag;
+    private int mRequests;
+    private String mUrl;
+    private CatalogSyncer mSyncer;
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setup() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/feed.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests++;
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                if (mEtag.equals(ifNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = mFeed.getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().set("ETag", mEtag);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/feed.json";
+
+        Robolectric.buildContentProvider(VideoProvider.class)
+                .create(VideoContract.CONTENT_AUTHORITY);
+        Context context = RuntimeEnvironment.application;
+        mContentResolver = context.getContentResolver();
+        mSyncer = new CatalogSyncer(new VideoDbBuilder(context), mContentResolver,
+                context.getSharedPreferences("catalog_sync_test", Context.MODE_PRIVATE));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void unchangedCatalogCostsOneNotModified() throws IOException {
+        mFeed = FEED_V1;
+        mEtag = "\"v1\"";
+        CatalogSyncer.Result result = mSyncer.sync(mUrl);
+        Assert.assertFalse(result.notModified);
+        Assert.assertEquals(2, result.inserted);
+        Assert.assertEquals(2, countVideos());
+
+        result = mSyncer.sync(mUrl);
+        Assert.assertTrue(result.notModified);
+        Assert.assertEquals(0, result.inserted + result.updated + result.deleted);
+        Assert.assertEquals(2, mRequests);
+    }
+
+    @Test
+    public void changedCatalogAppliesOnlyTheDiff() throws IOException {
+        mFeed = FEED_V1;
+        mEtag = "\"v1\"";
+        mSyncer.sync(mUrl);
+
+        mFeed = FEED_V2;
+        mEtag = "\"v2\"";
+        CatalogSyncer.Result result = mSyncer.sync(mUrl);
+        Assert.assertFalse(result.notModified);
+        Assert.assertEquals(2, result.inserted);
+        Assert.assertEquals(0, result.updated);
+        Assert.assertEquals(1, result.deleted);
+        Assert.assertEquals(1, result.unchanged);
+        Assert.assertEquals(3, countVideos());
+    }
+
+    @Test
+    public void changedRowIsUpdatedInPlaceAndDroppedRowIsDeleted() throws IOException {
+        mFeed = FEED_V1;
+        mEtag = "\"v1\"";
+        mSyncer.sync(mUrl);
+        long newDadId = findVideoId("http://www.example.com/new_dad.mp4");
+        Assert.assertTrue(newDadId > 0);
+
+        mFeed = FEED_CHANGED;
+        mEtag = "\"v3\"";
+        CatalogSyncer.Result result = mSyncer.sync(mUrl);
+        Assert.assertEquals(0, result.inserted);
+        Assert.assertEquals(1, result.updated);
+        Assert.assertEquals(1, result.deleted);
+        Assert.assertEquals(0, result.unchanged);
+
+        Cursor cursor = mContentResolver.query(VideoContract.VideoEntry.CONTENT_URI,
+                new String[]{VideoContract.VideoEntry._ID, VideoContract.VideoEntry.COLUMN_NAME},
+                VideoContract.VideoEntry.COLUMN_VIDEO_URL + " = ?",
+                new String[]{"http://www.example.com/new_dad.mp4"}, null);
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            Assert.assertEquals(newDadId, cursor.getLong(0));
+            Assert.assertEquals("New Dad Returns", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+        Assert.assertEquals(-1, findVideoId("http://www.example.com/pet_dog.mp4"));
+        Assert.assertEquals(1, countVideos());
+    }
+
+    private long findVideoId(String videoUrl) {
+        Cursor cursor = mContentResolver.query(VideoContract.VideoEntry.CONTENT_URI,
+                new String[]{VideoContract.VideoEntry._ID},
+                VideoContract.VideoEntry.COLUMN_VIDEO_URL + " = ?", new String[]{videoUrl}, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int countVideos() {
+        Cursor cursor = mContentResolver.query(VideoContract.VideoEntry.CONTENT_URI,
+                new String[]{VideoContract.VideoEntry._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -31,6 +31,8 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -100,6 +102,95 @@ public class VideoDbUnitTest {
         );
     }
 
+    @Test
+    public void streamVideosFromLocalJsonInBatches() throws IOException {
+        String json = "{\"googlevideos\": [{"
+                + "\"category\": \"Google+\", \"videos\": ["
+                + "{\"title\": \"New Dad\", \"studio\": \"Google+\","
+                + " \"sources\": [\"http://www.example.com/new_dad.mp4\"]},"
+                + "{\"title\": \"No Sources\", \"sources\": []},"
+                + "{\"title\": \"Pet Dog\", \"studio\": \"Google+\","
+                + " \"sources\": [\"http://www.example.com/pet_dog.mp4\"]}]}, {"
+                + "\"videos\": [{\"title\": \"Demo\","
+                + " \"sources\": [\"http://www.example.com/demo.mp4\"]}],"
+                + " \"category\": \"Demo Slam\"}]}";
+
+        final List<List<ContentValues>> batches = new ArrayList<>();
+        VideoDbBuilder videoDbBuilder = new VideoDbBuilder();
+        int count = videoDbBuilder.buildMedia(new StringReader(json), 2,
+                new VideoDbBuilder.BatchListener() {
+                    @Override
+                    public void onBatch(List<ContentValues> batch) {
+                        batches.add(batch);
+                    }
+                });
+
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(2, batches.get(0).size());
+        Assert.assertEquals(
+            "Pet Dog",
+            batches.get(0).get(1).getAsString(VideoContract.VideoEntry.COLUMN_NAME)
+        );
+        Assert.assertEquals(
+            "Demo Slam",
+            batches.get(1).get(0).getAsString(VideoContract.VideoEntry.COLUMN_CATEGORY)
+        );
+    }
+
+    @Test
+    public void skipEntriesOfUnexpectedType() throws IOException {
+        String json = "{\"googlevideos\": [\"not a category\", {"
+                + "\"category\": null, \"videos\": ["
+                + "{\"title\": \"Nameless\", \"sources\": [\"http://www.example.com/a.mp4\"]}]}, {"
+                + "\"category\": \"Google+\", \"videos\": [42, null,"
+                + "{\"title\": \"New Dad\", \"sources\": [\"http://www.example.com/new_dad.mp4\"]}"
+                + "]}]}";
+
+        final List<ContentValues> rows = new ArrayList<>();
+        int count = new VideoDbBuilder().buildMedia(new StringReader(json), 10,
+                new VideoDbBuilder.BatchListener() {
+                    @Override
+                    public void onBatch(List<ContentValues> batch) {
+                        rows.addAll(batch);
+                    }
+                });
+
+        Assert.assertEquals(1, count);
+        Assert.assertEquals(
+            "New Dad",
+            rows.get(0).getAsString(VideoContract.VideoEntry.COLUMN_NAME)
+        );
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectUnexpectedStructure() throws IOException {
+        String json = "{\"googlevideos\": [{\"category\": \"Google+\", \"videos\": ["
+                + "{\"title\": {\"text\": \"New Dad\"},"
+                + " \"sources\": [\"http://www.example.com/new_dad.mp4\"]}]}]}";
+        new VideoDbBuilder().buildMedia(new StringReader(json), 10,
+                new VideoDbBuilder.BatchListener() {
+                    @Override
+                    public void onBatch(List<ContentValues> batch) {
+                    }
+                });
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectTooManyVideosBeforeCategoryName() throws IOException {
+        String json = "{\"googlevideos\": [{\"videos\": ["
+                + "{\"title\": \"A\", \"sources\": [\"http://www.example.com/a.mp4\"]},"
+                + "{\"title\": \"B\", \"sources\": [\"http://www.example.com/b.mp4\"]},"
+                + "{\"title\": \"C\", \"sources\": [\"http://www.example.com/c.mp4\"]}"
+                + "], \"category\": \"Google+\"}]}";
+        new VideoDbBuilder().buildMedia(new StringReader(json), 2,
+                new VideoDbBuilder.BatchListener() {
+                    @Override
+                    public void onBatch(List<ContentValues> batch) {
+                    }
+                });
+    }
+
     @Test
     public void getVideosFromServer() throws IOException, JSONException {
         String serverUrl = "https://storage.googleapis.com/androiddevelopers/samples_assets/android-tv/android_tv_videos_new.json";
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.tvleanback;
+
+import android.app.SearchManager;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.tvleanback.data.VideoContract;
+import com.example.android.tvleanback.data.VideoDbBuilder;
+import com.example.android.tvleanback.data.VideoProvider;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ranks search suggestions over a catalog of the size the suggestion budget is set for.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = "src/main/AndroidManifest.xml")
+public class VideoProviderSearchTest {
+    private static final int VIDEO_COUNT = 100000;
+    // Suggestions are fetched on every keystroke, so they must stay in single-digit milliseconds.
+    private static final long MAX_QUERY_MS = 10;
+    private static final int TIMED_RUNS = 5;
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setup() throws IOException {
+        Robolectric.buildContentProvider(VideoProvider.class)
+                .create(VideoContract.CONTENT_AUTHORITY);
+        Context context = RuntimeEnvironment.application;
+        mContentResolver = context.getContentResolver();
+
+        StringBuilder json = new StringBuilder("{\"googlevideos\": [{"
+                + "\"category\": \"Fixture\", \"videos\": [");
+        for (int i = 0; i < VIDEO_COUNT; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"title\": \"Video ").append(i).append("\", ")
+                    .append("\"description\": \"A sample video about topic ").append(i % 100)
+                    .append("\", \"sources\": [\"http://www.example.com/").append(i)
+                    .append(".mp4\"]}");
+        }
+        json.append(",{\"title\": \"Ocean Documentary\", \"description\": \"Whales\","
+                + " \"sources\": [\"http://www.example.com/ocean_name.mp4\"]}");
+        json.append(",{\"title\": \"Travel Diary\", \"description\": \"A trip along the ocean"
+                + " shore, with a long description that mentions many other things as well\","
+                + " \"sources\": [\"http://www.example.com/ocean_description.mp4\"]}");
+        json.append("]}]}");
+
+        new VideoDbBuilder(context).buildMedia(new StringReader(json.toString()), 500,
+                new VideoDbBuilder.BatchListener() {
+                    @Override
+                    public void onBatch(List<ContentValues> batch) {
+                        mContentResolver.bulkInsert(VideoContract.VideoEntry.CONTENT_URI,
+                                batch.toArray(new ContentValues[batch.size()]));
+                    }
+                });
+    }
+
+    @Test
+    public void nameHitsRankAboveDescriptionHits() {
+        Cursor cursor = search("ocean", 10);
+        try {
+            Assert.assertEquals(2, cursor.getCount());
+            int nameIndex = cursor.getColumnIndexOrThrow(VideoContract.VideoEntry.COLUMN_NAME);
+            Assert.assertTrue(cursor.moveToFirst());
+            Assert.assertEquals("Ocean Documentary", cursor.getString(nameIndex));
+            Assert.assertTrue(cursor.moveToNext());
+            Assert.assertEquals("Travel Diary", cursor.getString(nameIndex));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void wordInEveryVideoStaysWithinBudget() {
+        assertWithinBudget("video");
+    }
+
+    @Test
+    public void shortPrefixStaysWithinBudget() {
+        // Matches every name and most descriptions.
+        assertWithinBudget("v");
+    }
+
+    private void assertWithinBudget(String query) {
+        // Warm up the statement cache and the database pages.
+        search(query, 20).close();
+
+        // The median of a few runs, so that one pause of the test JVM does not fail the test.
+        long[] elapsed = new long[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            Cursor cursor = search(query, 20);
+            try {
+                Assert.assertEquals(20, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+            elapsed[i] = (System.nanoTime() - start) / 1000000;
+        }
+        Arrays.sort(elapsed);
+        long median = elapsed[TIMED_RUNS / 2];
+        Assert.assertTrue("Searching " + VIDEO_COUNT + " videos for \"" + query + "\" took "
+                + median + "ms", median < MAX_QUERY_MS);
+    }
+
+    private Cursor search(String query, int limit) {
+        Uri uri = VideoContract.VideoEntry.SEARCH_URI.buildUpon()
+                .appendQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT,
+                        Integer.toString(limit))
+                .build();
+        return mContentResolver.query(uri, null, null, new String[]{query}, null);
+    }
+}
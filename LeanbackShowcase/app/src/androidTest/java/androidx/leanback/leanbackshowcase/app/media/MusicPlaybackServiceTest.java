@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.leanback.leanbackshowcase.R;
+import androidx.leanback.leanbackshowcase.utils.Utils;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.ServiceTestRule;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the gap between two tracks played by {@link MusicPlaybackService}, with and without the
+ * next track prepared in the background.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MusicPlaybackServiceTest {
+
+    private static final String TAG = "MusicPlaybackServiceTest";
+    private static final long TIMEOUT_MS = 15000;
+    // how long before the end of the first track playback resumes
+    private static final int SEEK_BEFORE_END_MS = 1500;
+
+    @Rule
+    public final ServiceTestRule mServiceRule = new ServiceTestRule();
+
+    @Test
+    public void gaplessPlaybackShortensTheGapBetweenTracks() throws Exception {
+        MusicPlaybackService service = bindService();
+        long coldGap = measureTrackGap(service, false, MusicPlaybackService.MEDIA_ACTION_NO_REPEAT);
+        long gaplessGap = measureTrackGap(service, true,
+                MusicPlaybackService.MEDIA_ACTION_NO_REPEAT);
+        Log.d(TAG, "gap without pre-preparation: " + coldGap + "ms, gapless: " + gaplessGap + "ms");
+        assertTrue("gapless " + gaplessGap + "ms, cold " + coldGap + "ms", gaplessGap < coldGap);
+    }
+
+    @Test
+    public void repeatOneChainsTheSameTrack() throws Exception {
+        final MusicPlaybackService service = bindService();
+        measureTrackGap(service, true, MusicPlaybackService.MEDIA_ACTION_REPEAT_ONE);
+        assertEquals(0, (int) onMainSync(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return service.findMediaItemPosition(service.getCurrentMediaItem());
+            }
+        }));
+    }
+
+    @Test
+    public void repeatAllWrapsToTheFirstTrack() throws Exception {
+        final MusicPlaybackService service = bindService();
+        final List<MediaMetaData> items = createMediaItems();
+        onMainSync(new Callable<Void>() {
+            @Override
+            public Void call() {
+                service.setGaplessPlaybackEnabled(true);
+                service.setRepeatState(MusicPlaybackService.MEDIA_ACTION_REPEAT_ALL);
+                service.setMediaItemList(items, false);
+                service.playMediaItem(items.get(items.size() - 1));
+                return null;
+            }
+        });
+        playThroughEnd(service);
+        assertEquals(0, (int) onMainSync(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return service.findMediaItemPosition(service.getCurrentMediaItem());
+            }
+        }));
+    }
+
+    private long measureTrackGap(final MusicPlaybackService service, final boolean gapless,
+            final int repeatState) throws Exception {
+        final List<MediaMetaData> items = createMediaItems();
+        onMainSync(new Callable<Void>() {
+            @Override
+            public Void call() {
+                service.setGaplessPlaybackEnabled(gapless);
+                service.setRepeatState(repeatState);
+                service.setMediaItemList(items, false);
+                service.playMediaItem(items.get(0));
+                return null;
+            }
+        });
+        playThroughEnd(service);
+        return onMainSync(new Callable<Long>() {
+            @Override
+            public Long call() {
+                service.pause();
+                return service.getLastTrackGapMs();
+            }
+        });
+    }
+
+    /**
+     * Waits for the current track to play and for the next one to be prepared when gapless
+     * playback is enabled, then seeks close to the end and waits for the next track to start.
+     */
+    private void playThroughEnd(final MusicPlaybackService service) throws Exception {
+        waitFor(service, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return service.isPlaying() && (!service.isGaplessPlaybackEnabled()
+                        || service.isNextMediaPrepared());
+            }
+        });
+        final int transitions = onMainSync(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                service.seekTo(service.getDuration() - SEEK_BEFORE_END_MS);
+                return service.getTrackTransitionCount();
+            }
+        });
+        waitFor(service, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return service.getTrackTransitionCount() > transitions;
+            }
+        });
+    }
+
+    private MusicPlaybackService bindService() throws TimeoutException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        MusicPlaybackService.LocalBinder binder = (MusicPlaybackService.LocalBinder)
+                mServiceRule.bindService(new Intent(context, MusicPlaybackService.class));
+        return binder.getService();
+    }
+
+    private static List<MediaMetaData> createMediaItems() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        int[] tracks = {R.raw.track_01, R.raw.track_02, R.raw.track_03};
+        List<MediaMetaData> items = new ArrayList<>();
+        for (int track : tracks) {
+            MediaMetaData item = new MediaMetaData();
+            item.setMediaSourceUri(Utils.getResourceUri(context, track));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static void waitFor(MusicPlaybackService service, Callable<Boolean> condition)
+            throws Exception {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (!onMainSync(condition)) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                throw new TimeoutException("Timed out waiting for " + service);
+            }
+            SystemClock.sleep(20);
+        }
+    }
+
+    /**
+     * The service and its players live on the main thread.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T onMainSync(final Callable<T> callable) throws Exception {
+        final Object[] result = new Object[1];
+        final Exception[] error = new Exception[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = callable.call();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return (T) result[0];
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Byte bounded pool of bitmaps that are no longer displayed, used as
+ * {@link BitmapFactory.Options#inBitmap} for the next decode so that scrubbing through the seek
+ * thumbnails does not allocate a new bitmap per frame.
+ *
+ * Bitmaps are put back by the thumbnail caches on the main thread and taken by the decoding
+ * threads, all methods are thread safe.
+ */
+class BitmapReusePool {
+
+    private final int mMaxBytes;
+    // oldest first, dropped from the head when over budget
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private int mBytes;
+
+    private int mReuseCount;
+    private int mAllocationCount;
+
+    BitmapReusePool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Gives a bitmap back to the pool. The caller must not draw it any more.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getAllocationByteCount() > mMaxBytes) {
+            return;
+        }
+        for (Bitmap pooled : mBitmaps) {
+            if (pooled == bitmap) {
+                return;
+            }
+        }
+        mBitmaps.addLast(bitmap);
+        mBytes += bitmap.getAllocationByteCount();
+        while (mBytes > mMaxBytes) {
+            mBytes -= mBitmaps.removeFirst().getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Returns a pooled bitmap reconfigured to the given size, or null if none is large enough.
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int byteCount = width * height * bytesPerPixel(config);
+        for (Iterator<Bitmap> it = mBitmaps.iterator(); it.hasNext(); ) {
+            Bitmap bitmap = it.next();
+            if (bitmap.getAllocationByteCount() >= byteCount) {
+                it.remove();
+                mBytes -= bitmap.getAllocationByteCount();
+                if (bitmap.getWidth() != width || bitmap.getHeight() != height
+                        || bitmap.getConfig() != config) {
+                    bitmap.reconfigure(width, height, config);
+                }
+                mReuseCount++;
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a bitmap of the given size, reused from the pool when possible.
+     */
+    Bitmap obtain(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = get(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+            synchronized (this) {
+                mAllocationCount++;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes the file into a pooled bitmap when one is large enough.
+     */
+    Bitmap decodeFile(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = get(options.outWidth, options.outHeight,
+                Bitmap.Config.ARGB_8888);
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException ex) {
+            // the decoder refused the pooled bitmap, give it back and decode into a new one
+            put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(path, options);
+        }
+        if (bitmap == null) {
+            put(options.inBitmap);
+        } else if (bitmap != options.inBitmap) {
+            synchronized (this) {
+                mAllocationCount++;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes a region of an image into a pooled bitmap when one is large enough.
+     */
+    Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect rect) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inBitmap = get(rect.width(), rect.height(), Bitmap.Config.ARGB_8888);
+        Bitmap bitmap;
+        try {
+            bitmap = decoder.decodeRegion(rect, options);
+        } catch (IllegalArgumentException ex) {
+            put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = decoder.decodeRegion(rect, options);
+        }
+        if (bitmap == null) {
+            put(options.inBitmap);
+        } else if (bitmap != options.inBitmap) {
+            synchronized (this) {
+                mAllocationCount++;
+            }
+        }
+        return bitmap;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    synchronized void clear() {
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    synchronized int getSizeBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Number of bitmaps handed out from the pool.
+     */
+    synchronized int getReuseCount() {
+        return mReuseCount;
+    }
+
+    /**
+     * Number of bitmaps that had to be allocated because the pool had none that fit.
+     */
+    synchronized int getAllocationCount() {
+        return mAllocationCount;
+    }
+}
@@ -18,9 +18,11 @@ package androidx.leanback.leanbackshowcase.app.media;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
+import android.util.Log;
 import androidx.leanback.media.PlaybackGlueHost;
 import androidx.leanback.media.PlayerAdapter;
 import androidx.leanback.media.SurfaceHolderGlueHost;
+import androidx.leanback.leanbackshowcase.BuildConfig;
 import androidx.leanback.leanbackshowcase.R;
 import android.view.SurfaceHolder;
 
@@ -45,6 +47,10 @@ import com.google.android.exoplayer2.util.Util;
  */
 public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventListener{
 
+    private static final String TAG = "ExoPlayerAdapter";
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    private static final long MEDIA_CACHE_BYTES = 100 * 1024 * 1024;
+
     Context mContext;
     final SimpleExoPlayer mPlayer;
     SurfaceHolderGlueHost mSurfaceHolderGlueHost;
@@ -59,6 +65,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
     final Handler mHandler = new Handler();
     boolean mInitialized = false;
     Uri mMediaSourceUri = null;
+    CachingDataSourceFactory mDataSourceFactory;
     boolean mHasDisplay;
     boolean mBufferingStart;
     @C.StreamType int mAudioStreamType;
@@ -118,6 +125,9 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
         changeToUninitialized();
         mHasDisplay = false;
         mPlayer.release();
+        if (DEBUG && mDataSourceFactory != null) {
+            Log.d(TAG, "Media cache: " + mDataSourceFactory);
+        }
     }
 
     @Override
@@ -250,14 +260,26 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
      * @return MediaSource for the player
      */
     public MediaSource onCreateMediaSource(Uri uri) {
-        String userAgent = Util.getUserAgent(mContext, "ExoPlayerAdapter");
         return new ExtractorMediaSource(uri,
-                new DefaultDataSourceFactory(mContext, userAgent),
+                getDataSourceFactory(),
                 new DefaultExtractorsFactory(),
                 null,
                 null);
     }
 
+    /**
+     * Returns the factory used to read media, which keeps what it reads in a disk cache shared by
+     * every adapter, so content that was played before is not downloaded again.
+     */
+    public CachingDataSourceFactory getDataSourceFactory() {
+        if (mDataSourceFactory == null) {
+            String userAgent = Util.getUserAgent(mContext, "ExoPlayerAdapter");
+            mDataSourceFactory = new CachingDataSourceFactory(mContext, MEDIA_CACHE_BYTES,
+                    new DefaultDataSourceFactory(mContext, userAgent));
+        }
+        return mDataSourceFactory;
+    }
+
     private void prepareMediaForPlaying() {
         reset();
         if (mMediaSourceUri != null) {
@@ -30,6 +30,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
@@ -50,6 +51,9 @@ import java.util.List;
  * media list from an app and starts playing the media items one after another. Apps can also directly
  * interact with the service for specific operations such as playing or pausing or getting different
  * info about the current media item.
+ *
+ * By default the next media item is prepared on a second MediaPlayer while the current one plays,
+ * and chained to it with {@link MediaPlayer#setNextMediaPlayer} so there is no gap between tracks.
  */
 public class MusicPlaybackService extends Service {
 
@@ -67,6 +71,20 @@ public class MusicPlaybackService extends Service {
     private int mRepeatState = MEDIA_ACTION_NO_REPEAT;
 
     private MediaPlayer mPlayer;
+    // Player of the item that follows the current one, prepared in the background and chained to
+    // mPlayer once prepared. Null when gapless playback is disabled or there is no next item.
+    private MediaPlayer mNextPlayer;
+    private int mNextPlayerPosition = -1;
+    private boolean mNextPlayerPrepared = false;
+    // A released-from-duty player kept around for preparing the next item
+    private MediaPlayer mSparePlayer;
+    private boolean mGaplessPlaybackEnabled = true;
+
+    // Time at which the current track is expected to end if it keeps playing, used to measure
+    // the gap to the next track
+    private long mExpectedTrackEndTime = 0;
+    private long mLastTrackGapMs = -1;
+    private int mTrackTransitionCount = 0;
     // MediaSession created for communication between NowPlayingCard in the launcher and the current MediaPlayer state
     private MediaSessionCompat mMediaSession;
 
@@ -210,11 +228,48 @@ public class MusicPlaybackService extends Service {
             mMediaItemList.clear();
         }
         mMediaItemList.addAll(mediaItemList);
-
+        // the item after the current one may have changed
+        invalidateNextPlayer();
     }
 
     public void setRepeatState(int repeatState) {
         mRepeatState = repeatState;
+        invalidateNextPlayer();
+    }
+
+    /**
+     * Enables or disables preparing the next item while the current one plays. When disabled,
+     * each track is prepared after the previous one completes.
+     */
+    public void setGaplessPlaybackEnabled(boolean enabled) {
+        mGaplessPlaybackEnabled = enabled;
+        invalidateNextPlayer();
+    }
+
+    public boolean isGaplessPlaybackEnabled() {
+        return mGaplessPlaybackEnabled;
+    }
+
+    /**
+     * @return Whether the next item is prepared and chained to the current one.
+     */
+    public boolean isNextMediaPrepared() {
+        return mNextPlayerPrepared;
+    }
+
+    /**
+     * @return The silence between the end of the last track and the start of the next one in
+     * milliseconds, or -1 if no track has followed another yet.
+     */
+    public long getLastTrackGapMs() {
+        return mLastTrackGapMs;
+    }
+
+    /**
+     * @return The number of times a track ran to its end and the next one started playing.
+     */
+    public int getTrackTransitionCount() {
+        return mTrackTransitionCount;
     }
 
     public int getRepeatState() {
@@ -271,24 +326,42 @@ public class MusicPlaybackService extends Service {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        setUpPlayer(mPlayer);
         mPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
             @Override public void onPrepared(MediaPlayer mp) {
                 updateMediaSessionMetaData();
                 mInitialized = true;
                 play();
+                prepareNextMedia();
             }
         });
-        mPlayer.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+        mPlayer.prepareAsync();
+        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PREPARING);
+    }
+
+    private void setUpPlayer(MediaPlayer player) {
+        player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
             @Override
             public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
                 Log.e(TAG, "Error: what=" + what + ", extra=" + extra);
+                if (mediaPlayer == mNextPlayer) {
+                    // fall back to preparing the next item when the current one completes
+                    releaseNextPlayer();
+                }
                 return true;
             }
         });
-
-        mPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+        player.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
             @Override public void onCompletion(MediaPlayer mp) {
+                if (mp != mPlayer) {
+                    return;
+                }
+                if (mNextPlayerPrepared) {
+                    switchToNextPlayer();
+                    return;
+                }
+                long completionTime = SystemClock.uptimeMillis();
                 updateMediaSessionPlayState();
                 if (mRepeatState == MEDIA_ACTION_REPEAT_ALL &&
                         mCurrentMediaPosition == mMediaItemList.size() - 1) {
@@ -312,12 +385,140 @@ public class MusicPlaybackService extends Service {
                     // final seconds).
                     notifyMediaStateChanged(MediaUtils.MEDIA_STATE_MEDIALIST_COMPLETED);
                     stopServiceIfNeeded();
+                    return;
+                }
+                // the gap is measured from the end of the track when the next one starts playing
+                mExpectedTrackEndTime = completionTime;
+            }
+        });
+    }
+
+    /**
+     * @return The position of the item that plays after the current one, honoring the repeat
+     * state, or -1 if playback stops after the current item.
+     */
+    private int getNextMediaPosition() {
+        if (mCurrentMediaPosition < 0 || mCurrentMediaPosition >= mMediaItemList.size()) {
+            return -1;
+        }
+        if (mRepeatState == MEDIA_ACTION_REPEAT_ONE) {
+            return mCurrentMediaPosition;
+        } else if (mCurrentMediaPosition < mMediaItemList.size() - 1) {
+            return mCurrentMediaPosition + 1;
+        } else if (mRepeatState == MEDIA_ACTION_REPEAT_ALL) {
+            return 0;
+        }
+        return -1;
+    }
 
+    /**
+     * Prepares the next item on a second player in the background and chains it to the current
+     * player once prepared.
+     */
+    private void prepareNextMedia() {
+        if (!mGaplessPlaybackEnabled || !mInitialized || mNextPlayer != null) {
+            return;
+        }
+        final int nextPosition = getNextMediaPosition();
+        if (nextPosition == -1) {
+            return;
+        }
+        MediaPlayer nextPlayer = mSparePlayer != null ? mSparePlayer : new MediaPlayer();
+        mSparePlayer = null;
+        try {
+            nextPlayer.setDataSource(getApplicationContext(),
+                    mMediaItemList.get(nextPosition).getMediaSourceUri());
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot prepare the next media item", e);
+            nextPlayer.release();
+            return;
+        }
+        setUpPlayer(nextPlayer);
+        nextPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override public void onPrepared(MediaPlayer mp) {
+                if (mp != mNextPlayer || !mInitialized) {
+                    return;
                 }
+                mPlayer.setNextMediaPlayer(mNextPlayer);
+                mNextPlayerPrepared = true;
             }
         });
-        mPlayer.prepareAsync();
-        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PREPARING);
+        mNextPlayer = nextPlayer;
+        mNextPlayerPosition = nextPosition;
+        mNextPlayerPrepared = false;
+        nextPlayer.prepareAsync();
+    }
+
+    /**
+     * The current player completed and the chained player has taken over, make it the current
+     * one and start preparing the item after it.
+     */
+    private void switchToNextPlayer() {
+        long now = SystemClock.uptimeMillis();
+        MediaPlayer finishedPlayer = mPlayer;
+        int previousPosition = mCurrentMediaPosition;
+        mPlayer = mNextPlayer;
+        mCurrentMediaPosition = mNextPlayerPosition;
+        mNextPlayer = null;
+        mNextPlayerPosition = -1;
+        mNextPlayerPrepared = false;
+        recyclePlayer(finishedPlayer);
+
+        // the next track started playing its current position ago
+        onTrackStarted(now - mPlayer.getCurrentPosition());
+        if (mCurrentMediaPosition != previousPosition) {
+            notifyMediaItemChanged(mMediaItemList.get(mCurrentMediaPosition));
+            updateMediaSessionMetaData();
+        }
+        updateMediaSessionPlayState();
+        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PLAYING);
+        prepareNextMedia();
+    }
+
+    private void onTrackStarted(long startTime) {
+        if (mExpectedTrackEndTime != 0) {
+            mLastTrackGapMs = Math.max(0, startTime - mExpectedTrackEndTime);
+            mTrackTransitionCount++;
+            Log.d(TAG, "Gap between tracks: " + mLastTrackGapMs + "ms");
+        }
+        updateExpectedTrackEndTime();
+    }
+
+    private void updateExpectedTrackEndTime() {
+        mExpectedTrackEndTime = isPlaying()
+                ? SystemClock.uptimeMillis() + mPlayer.getDuration() - mPlayer.getCurrentPosition()
+                : 0;
+    }
+
+    /**
+     * Drops the pre-prepared player, e.g. because the item that follows the current one changed,
+     * and prepares the new next item.
+     */
+    private void invalidateNextPlayer() {
+        releaseNextPlayer();
+        prepareNextMedia();
+    }
+
+    private void releaseNextPlayer() {
+        if (mNextPlayer == null) {
+            return;
+        }
+        if (mNextPlayerPrepared && mPlayer != null && mInitialized) {
+            mPlayer.setNextMediaPlayer(null);
+        }
+        recyclePlayer(mNextPlayer);
+        mNextPlayer = null;
+        mNextPlayerPosition = -1;
+        mNextPlayerPrepared = false;
+    }
+
+    private void recyclePlayer(MediaPlayer player) {
+        if (mSparePlayer == null) {
+            player.reset();
+            mSparePlayer = player;
+        } else {
+            player.release();
+        }
     }
 
     private void updateMediaSessionMetaData() {
@@ -388,6 +589,9 @@ public class MusicPlaybackService extends Service {
     }
 
     void reset() {
+        releaseNextPlayer();
+        // a track started after a reset is not a transition, unless a completion sets this again
+        mExpectedTrackEndTime = 0;
         if (mPlayer != null) {
             mPlayer.reset();
             mInitialized = false;
@@ -400,6 +604,7 @@ public class MusicPlaybackService extends Service {
     public void play() {
         if (mPlayer != null && mInitialized && !isPlaying()) {
             mPlayer.start();
+            onTrackStarted(SystemClock.uptimeMillis());
             updateMediaSessionPlayState();
             notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PLAYING);
         }
@@ -411,6 +616,7 @@ public class MusicPlaybackService extends Service {
     public void pause() {
         if (mPlayer != null && mPlayer.isPlaying()){
             mPlayer.pause();
+            mExpectedTrackEndTime = 0;
             updateMediaSessionPlayState();
             notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PAUSED);
         }
@@ -486,6 +692,10 @@ public class MusicPlaybackService extends Service {
     public void seekTo(int newPosition) {
         if (mPlayer != null) {
             mPlayer.seekTo(newPosition);
+            if (mInitialized) {
+                mExpectedTrackEndTime = isPlaying()
+                        ? SystemClock.uptimeMillis() + mPlayer.getDuration() - newPosition : 0;
+            }
         }
     }
 
@@ -545,6 +755,11 @@ public class MusicPlaybackService extends Service {
         stopForeground(true);
         mAudioManager.abandonAudioFocus(mOnAudioFocusChangeListener);
         mMediaPlayerHandler.removeCallbacksAndMessages(null);
+        releaseNextPlayer();
+        if (mSparePlayer != null) {
+            mSparePlayer.release();
+            mSparePlayer = null;
+        }
         if (mPlayer != null) {
             // stop and release the media player since it's no longer in use
             mPlayer.reset();
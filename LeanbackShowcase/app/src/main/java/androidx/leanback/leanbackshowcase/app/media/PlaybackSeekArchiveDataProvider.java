@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Sample PlaybackSeekDataProvider that reads thumbnails from a packed archive built by
+ * tools/ThumbnailArchivePacker.java, e.g.
+ * new PlaybackSeekArchiveDataProvider("/sdcard/seek/thumbnails.lbtp")
+ * The seek positions come from the archive, each thumbnail is one region decode of a sprite
+ * sheet.
+ */
+public class PlaybackSeekArchiveDataProvider extends PlaybackSeekAsyncDataProvider {
+
+    final ThumbnailArchive mArchive;
+
+    public PlaybackSeekArchiveDataProvider(String path) throws IOException {
+        mArchive = new ThumbnailArchive(path);
+        setSeekPositions(mArchive.getSeekPositions());
+    }
+
+    @Override
+    protected Bitmap doInBackground(Object task, int index, long position) {
+        if (isCancelled(task)) {
+            return null;
+        }
+        try {
+            return mArchive.decodeFrame(index, mBitmapPool);
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot load thumbnail " + index, ex);
+            return null;
+        }
+    }
+}
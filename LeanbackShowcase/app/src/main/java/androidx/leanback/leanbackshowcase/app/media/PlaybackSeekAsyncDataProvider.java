@@ -17,7 +17,10 @@
 package androidx.leanback.leanbackshowcase.app.media;
 
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import androidx.leanback.widget.PlaybackSeekDataProvider;
 import androidx.collection.LruCache;
 import android.util.Log;
@@ -25,16 +28,50 @@ import android.util.SparseArray;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
- * Base class that implements PlaybackSeekDataProvider using AsyncTask.THREAD_POOL_EXECUTOR with
- * prefetching.
+ * Base class that implements PlaybackSeekDataProvider on a thumbnail executor owned by the
+ * provider, with prefetching.
+ *
+ * Thumbnails requested by the user are loaded before prefetched ones, the most recent request
+ * first. Loads that fall outside a window around the current scrub position are cancelled so
+ * that fast scrubbing does not leave a backlog of stale loads.
+ *
+ * Prefetching follows the scrub velocity measured from the timing of {@link #getThumbnail}: when
+ * the user skips frames the prefetch skips them too, and the lookahead covers the frames the
+ * user will reach while a few thumbnails load, so it shrinks as the user slows down.
  */
 public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProvider {
 
     static final String TAG = "SeekAsyncProvider";
 
+    static final int THUMBNAIL_THREADS = 2;
+    static final int DEFAULT_CANCEL_WINDOW = 24;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 5;
+
+    // the ThumbsBar shows fewer consecutive seek positions than this at once
+    static final int MAX_THUMBS_ON_SCREEN = 16;
+    // defaults sized for 16 and 24 thumbnails of 320x180 ARGB_8888
+    static final int DEFAULT_CACHE_BYTES = MAX_THUMBS_ON_SCREEN * 320 * 180 * 4;
+    static final int DEFAULT_PREFETCH_CACHE_BYTES = 24 * 320 * 180 * 4;
+    static final int DEFAULT_PREFETCH_COUNT = 24;
+
+    // the adaptive prefetch looks at least this far ahead, and at least this many frames
+    static final long MIN_LOOKAHEAD_MS = 300;
+    static final int MIN_LOOKAHEAD = 2;
+    // a pause this long starts a new scrub gesture, the measured velocity is discarded
+    static final long SCRUB_IDLE_MS = 1000;
+    // weight of the newest sample in the smoothed stride and interval
+    static final float VELOCITY_SMOOTHING = 0.5f;
+
+    static final int PRIORITY_REQUEST = 0;
+    static final int PRIORITY_PREFETCH = 1;
+
     long[] mSeekPositions;
     // mCache is for the bitmap requested by user
     final LruCache<Integer, Bitmap> mCache;
@@ -42,39 +79,135 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
     // estimation. We use a different LruCache so that items in mCache will not be evicted by
     // prefeteched items.
     final LruCache<Integer, Bitmap> mPrefetchCache;
+    // bitmaps that are not on screen, decoded into again by subclasses
+    final BitmapReusePool mBitmapPool;
+    // set while a bitmap moves from mPrefetchCache to mCache so it is not pooled
+    boolean mPromoting;
+    // size of the last loaded thumbnail, used to turn the prefetch budget into a count
+    int mThumbnailBytes;
     final SparseArray<LoadBitmapTask> mRequests = new SparseArray<>();
     int mLastRequestedIndex = -1;
+    // position of the latest getThumbnail(), the ThumbsBar shows the positions around it
+    int mOnScreenIndex = -1;
+    int mLastScrubDelta;
+    int mCancelWindow = DEFAULT_CANCEL_WINDOW;
+
+    boolean mAdaptivePrefetch = true;
+    long mLastRequestTime;
+    // smoothed number of positions between two requests, and time between them
+    float mScrubStride = 1;
+    float mScrubIntervalMs = SCRUB_IDLE_MS;
+
+    final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    final ThreadPoolExecutor mExecutor;
+    long mTaskSequence;
+
+    // statistics, only touched on the main thread
+    int mLoadedCount;
+    int mCancelledCount;
+    long mTotalLoadLatencyMs;
+    long mLastLoadLatencyMs;
+    int mRequestCount;
+    int mPrefetchHitCount;
+    int mPrefetchIssuedCount;
 
     protected boolean isCancelled(Object task) {
-        return ((AsyncTask) task).isCancelled();
+        return ((LoadBitmapTask) task).isCancelled();
     }
 
     protected abstract Bitmap doInBackground(Object task, int index, long position);
 
-    class LoadBitmapTask extends AsyncTask<Object, Object, Bitmap> {
+    class LoadBitmapTask implements Runnable, Comparable<LoadBitmapTask> {
 
-        int mIndex;
+        final int mIndex;
         ResultCallback mResultCallback;
+        int mPriority;
+        long mSequence;
+        final long mEnqueueTime = System.currentTimeMillis();
+        volatile boolean mCancelled;
+        // worker thread running the task, interrupted on cancel
+        Thread mThread;
 
         LoadBitmapTask(int index, ResultCallback callback) {
             mIndex = index;
             mResultCallback = callback;
+            mPriority = callback != null ? PRIORITY_REQUEST : PRIORITY_PREFETCH;
+            mSequence = mTaskSequence++;
+        }
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+
+        void cancel() {
+            mCancelled = true;
+            synchronized (this) {
+                if (mThread != null) {
+                    mThread.interrupt();
+                }
+            }
         }
 
         @Override
-        protected Bitmap doInBackground(Object[] params) {
-            return PlaybackSeekAsyncDataProvider.this
-                    .doInBackground(this, mIndex, mSeekPositions[mIndex]);
+        public int compareTo(LoadBitmapTask other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            // the latest request is the one on screen, prefetches go in the order they were issued
+            if (mPriority == PRIORITY_REQUEST) {
+                return Long.compare(other.mSequence, mSequence);
+            }
+            return Long.compare(mSequence, other.mSequence);
         }
 
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            mRequests.remove(mIndex);
-            Log.d(TAG, "thumb Loaded " + mIndex);
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            synchronized (this) {
+                mThread = Thread.currentThread();
+            }
+            final Bitmap bitmap;
+            try {
+                bitmap = PlaybackSeekAsyncDataProvider.this
+                        .doInBackground(this, mIndex, mSeekPositions[mIndex]);
+            } finally {
+                synchronized (this) {
+                    mThread = null;
+                    // don't leak a cancel() interrupt into the next task on this thread
+                    Thread.interrupted();
+                }
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPostExecute(bitmap);
+                }
+            });
+        }
+
+        void onPostExecute(Bitmap bitmap) {
+            if (mCancelled) {
+                mBitmapPool.put(bitmap);
+                return;
+            }
+            if (mRequests.get(mIndex) == this) {
+                mRequests.remove(mIndex);
+            }
+            mLastLoadLatencyMs = System.currentTimeMillis() - mEnqueueTime;
+            mTotalLoadLatencyMs += mLastLoadLatencyMs;
+            mLoadedCount++;
+            if (bitmap != null) {
+                mThumbnailBytes = bitmap.getAllocationByteCount();
+            }
+            Log.d(TAG, "thumb Loaded " + mIndex + " in " + mLastLoadLatencyMs + "ms");
             if (mResultCallback != null) {
-                mCache.put(mIndex, bitmap);
+                if (bitmap != null) {
+                    mCache.put(mIndex, bitmap);
+                }
                 mResultCallback.onThumbnailLoaded(bitmap, mIndex);
-            } else {
+            } else if (bitmap != null) {
                 mPrefetchCache.put(mIndex, bitmap);
             }
         }
@@ -82,12 +215,92 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
     }
 
     public PlaybackSeekAsyncDataProvider() {
-        this(16, 24);
+        this(DEFAULT_CACHE_BYTES, DEFAULT_PREFETCH_CACHE_BYTES);
     }
 
-    public PlaybackSeekAsyncDataProvider(int cacheSize, int prefetchCacheSize) {
-        mCache = new LruCache<Integer, Bitmap>(cacheSize);
-        mPrefetchCache = new LruCache<Integer, Bitmap>(prefetchCacheSize);
+    /**
+     * @param cacheSizeBytes Bytes of thumbnails requested by the user to keep
+     * @param prefetchCacheSizeBytes Bytes of prefetched thumbnails to keep
+     */
+    public PlaybackSeekAsyncDataProvider(int cacheSizeBytes, int prefetchCacheSizeBytes) {
+        mCache = new ThumbnailCache(cacheSizeBytes) {
+            @Override
+            boolean canPool(int index) {
+                // bitmaps of mCache were handed to a callback, only the ones too far from the
+                // current position to still be on screen can be drawn into again
+                return mOnScreenIndex != -1
+                        && Math.abs(index - mOnScreenIndex) >= MAX_THUMBS_ON_SCREEN;
+            }
+        };
+        mPrefetchCache = new ThumbnailCache(prefetchCacheSizeBytes);
+        // enough to cover the thumbnails dropped while the decoders catch up with a scrub
+        mBitmapPool = new BitmapReusePool(prefetchCacheSizeBytes / 2);
+        mExecutor = new ThreadPoolExecutor(THUMBNAIL_THREADS, THUMBNAIL_THREADS,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, TAG);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // the provider has no release callback, let idle threads go away by themselves
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * LruCache bounded by the bytes of the bitmaps, that returns the bitmaps it drops to
+     * {@link #mBitmapPool} when they are not on screen.
+     */
+    class ThumbnailCache extends LruCache<Integer, Bitmap> {
+
+        ThumbnailCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        /**
+         * @return Whether the bitmap of the given position can be drawn into again once dropped
+         */
+        boolean canPool(int index) {
+            return true;
+        }
+
+        @Override
+        protected int sizeOf(Integer key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                Bitmap newValue) {
+            if (!mPromoting && oldValue != newValue && canPool(key)) {
+                mBitmapPool.put(oldValue);
+            }
+        }
+    }
+
+    /**
+     * Switches between the velocity aware prefetch and the original one that fills the prefetch
+     * cache with consecutive positions, e.g. to compare them on the same scrub trace.
+     */
+    public void setAdaptivePrefetchEnabled(boolean enabled) {
+        mAdaptivePrefetch = enabled;
+    }
+
+    /**
+     * Sets how many seek positions around the current one keep their pending loads, loads
+     * further away are cancelled.
+     */
+    public void setCancelWindow(int cancelWindow) {
+        mCancelWindow = cancelWindow;
     }
 
     public void setSeekPositions(long[] positions) {
@@ -101,15 +314,20 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
 
     @Override
     public void getThumbnail(int index, ResultCallback callback) {
+        mOnScreenIndex = index;
         Integer key = index;
         Bitmap bitmap = mCache.get(key);
         if (bitmap != null) {
             callback.onThumbnailLoaded(bitmap, index);
         } else {
+            mRequestCount++;
             bitmap = mPrefetchCache.get(key);
             if (bitmap != null) {
-                mCache.put(key, bitmap);
+                mPrefetchHitCount++;
+                mPromoting = true;
                 mPrefetchCache.remove(key);
+                mPromoting = false;
+                mCache.put(key, bitmap);
                 callback.onThumbnailLoaded(bitmap, index);
             } else {
                 LoadBitmapTask task = mRequests.get(index);
@@ -117,22 +335,100 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
                     // no normal task or prefetch for the position, create a new task
                     task = new LoadBitmapTask(index, callback);
                     mRequests.put(index, task);
-                    task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                    mExecutor.execute(task);
                 } else {
+                    if (task.mResultCallback == null) {
+                        // the prefetch is already on its way
+                        mPrefetchHitCount++;
+                    }
                     // update existing ResultCallback which might be normal task or prefetch
                     task.mResultCallback = callback;
+                    // the priority queue does not reorder, re-queue the task if it is still
+                    // waiting so it runs ahead of the prefetches
+                    if (mExecutor.remove(task)) {
+                        task.mPriority = PRIORITY_REQUEST;
+                        task.mSequence = mTaskSequence++;
+                        mExecutor.execute(task);
+                    }
                 }
             }
         }
         if (mLastRequestedIndex != index) {
-            if (mLastRequestedIndex != -1) {
+            long now = uptimeMillis();
+            if (mLastRequestedIndex == -1) {
+                cancelOutsideWindow(index, mCancelWindow);
+            } else if (mAdaptivePrefetch) {
+                updateScrubVelocity(index - mLastRequestedIndex, now - mLastRequestTime);
+                int stride = Math.max(1, Math.round(mScrubStride));
+                int lookahead = getLookaheadCount();
+                // keep the loads the lookahead has issued at the current stride
+                cancelOutsideWindow(index, Math.max(mCancelWindow, stride * lookahead));
+                prefetchAhead(index, index > mLastRequestedIndex, stride, lookahead);
+            } else {
+                cancelOutsideWindow(index, mCancelWindow);
                 prefetch(mLastRequestedIndex, index > mLastRequestedIndex);
             }
             mLastRequestedIndex = index;
+            mLastRequestTime = now;
+        }
+    }
+
+    /**
+     * Clock used to measure the scrub velocity, replaying a recorded trace can override it.
+     */
+    protected long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    void updateScrubVelocity(int delta, long intervalMs) {
+        int step = Math.abs(delta);
+        if (intervalMs >= SCRUB_IDLE_MS || (delta > 0) != (mLastScrubDelta > 0)) {
+            // new gesture or change of direction, start over from this sample
+            mScrubStride = step;
+            mScrubIntervalMs = Math.max(intervalMs, 1);
+        } else {
+            mScrubStride += VELOCITY_SMOOTHING * (step - mScrubStride);
+            mScrubIntervalMs += VELOCITY_SMOOTHING * (Math.max(intervalMs, 1) - mScrubIntervalMs);
+        }
+        mLastScrubDelta = delta;
+    }
+
+    /**
+     * Number of frames to prefetch: the ones the user reaches while a couple of thumbnails load
+     * at the current pace, bounded by the prefetch cache.
+     */
+    int getLookaheadCount() {
+        long lookaheadMs = Math.max(MIN_LOOKAHEAD_MS, 2 * getAverageLoadLatencyMs());
+        int count = (int) Math.ceil(lookaheadMs / mScrubIntervalMs);
+        return Math.max(MIN_LOOKAHEAD, Math.min(count, DEFAULT_PREFETCH_COUNT));
+    }
+
+    /**
+     * Prefetches {@code count} positions ahead of {@code index}, {@code stride} positions apart.
+     */
+    void prefetchAhead(int index, boolean forward, int stride, int count) {
+        trimPrefetchCache(index, forward);
+        int inc = forward ? stride : -stride;
+        int i = index + inc;
+        for (int n = 0; n < count && hasPrefetchRoom() && i >= 0 && i < mSeekPositions.length;
+                n++, i += inc) {
+            startPrefetch(i);
         }
     }
 
     protected void prefetch(int hintIndex, boolean forward) {
+        trimPrefetchCache(hintIndex, forward);
+        int inc = forward ? 1 : -1;
+        for (int i = hintIndex; hasPrefetchRoom()
+                && (inc > 0 ? i < mSeekPositions.length : i >= 0); i += inc) {
+            startPrefetch(i);
+        }
+    }
+
+    /**
+     * Drops the prefetched thumbnails behind the scrub direction.
+     */
+    void trimPrefetchCache(int hintIndex, boolean forward) {
         for (Iterator<Map.Entry<Integer, Bitmap>> it =
                 mPrefetchCache.snapshot().entrySet().iterator(); it.hasNext(); ) {
             Map.Entry<Integer, Bitmap> entry = it.next();
@@ -140,32 +436,129 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
                 mPrefetchCache.remove(entry.getKey());
             }
         }
-        int inc = forward ? 1 : -1;
-        for (int i = hintIndex; (mRequests.size() + mPrefetchCache.size()
-                < mPrefetchCache.maxSize()) && (inc > 0 ? i < mSeekPositions.length : i >= 0);
-                i += inc) {
-            Integer key = i;
-            if (mCache.get(key) == null && mPrefetchCache.get(key) == null) {
-                LoadBitmapTask task = mRequests.get(i);
-                if (task == null) {
-                    task = new LoadBitmapTask(key, null);
-                    mRequests.put(i, task);
-                    task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-                }
+    }
+
+    boolean hasPrefetchRoom() {
+        int thumbnailBytes = mThumbnailBytes > 0 ? mThumbnailBytes
+                : mPrefetchCache.maxSize() / DEFAULT_PREFETCH_COUNT;
+        return mRequests.size() * thumbnailBytes + mPrefetchCache.size()
+                < mPrefetchCache.maxSize();
+    }
+
+    void startPrefetch(int index) {
+        Integer key = index;
+        if (mCache.get(key) == null && mPrefetchCache.get(key) == null
+                && mRequests.get(index) == null) {
+            LoadBitmapTask task = new LoadBitmapTask(index, null);
+            mRequests.put(index, task);
+            mExecutor.execute(task);
+            mPrefetchIssuedCount++;
+        }
+    }
+
+    /**
+     * Cancels the pending loads that are more than {@code window} positions away from the
+     * current scrub position.
+     */
+    void cancelOutsideWindow(int index, int window) {
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            if (Math.abs(mRequests.keyAt(i) - index) > window) {
+                cancelTask(mRequests.valueAt(i));
+                mRequests.removeAt(i);
             }
         }
     }
 
+    void cancelTask(LoadBitmapTask task) {
+        task.cancel();
+        mExecutor.remove(task);
+        mCancelledCount++;
+    }
+
+    /**
+     * Number of thumbnail loads waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * Time from queueing to delivery of the last thumbnail, in milliseconds.
+     */
+    public long getLastLoadLatencyMs() {
+        return mLastLoadLatencyMs;
+    }
+
+    public long getAverageLoadLatencyMs() {
+        return mLoadedCount == 0 ? 0 : mTotalLoadLatencyMs / mLoadedCount;
+    }
+
+    public int getLoadedCount() {
+        return mLoadedCount;
+    }
+
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    /**
+     * Fraction of the thumbnails requested by the user and missing from the requested cache that
+     * had been prefetched or were being prefetched.
+     */
+    public float getPrefetchHitRate() {
+        return mRequestCount == 0 ? 0 : (float) mPrefetchHitCount / mRequestCount;
+    }
+
+    /**
+     * Number of prefetches started, compare with the hits to see how many were wasted.
+     */
+    public int getPrefetchIssuedCount() {
+        return mPrefetchIssuedCount;
+    }
+
+    public int getPrefetchHitCount() {
+        return mPrefetchHitCount;
+    }
+
+    /**
+     * Current scrub velocity in positions per second, 0 when the user is not scrubbing.
+     */
+    public float getScrubVelocity() {
+        if (mLastRequestedIndex == -1 || uptimeMillis() - mLastRequestTime >= SCRUB_IDLE_MS) {
+            return 0;
+        }
+        return mScrubStride * 1000 / mScrubIntervalMs;
+    }
+
+    /**
+     * Number of thumbnails decoded into a reused bitmap. Compare with
+     * {@link #getBitmapAllocationCount()} over a scrub to see how close it gets to allocating
+     * nothing.
+     */
+    public int getBitmapReuseCount() {
+        return mBitmapPool.getReuseCount();
+    }
+
+    /**
+     * Number of thumbnails that needed a newly allocated bitmap.
+     */
+    public int getBitmapAllocationCount() {
+        return mBitmapPool.getAllocationCount();
+    }
+
     @Override
     public void reset() {
         for (int i = 0; i < mRequests.size(); i++) {
             LoadBitmapTask task = mRequests.valueAt(i);
-            task.cancel(true);
+            cancelTask(task);
         }
         mRequests.clear();
+        // the last thumbnails may still be drawn, leave them to the garbage collector
+        mOnScreenIndex = -1;
         mCache.evictAll();
         mPrefetchCache.evictAll();
         mLastRequestedIndex = -1;
+        mLastScrubDelta = 0;
     }
 
     @Override
@@ -194,6 +587,12 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
             }
         }
         b.append(">");
+        b.append(" queue=").append(getQueueDepth());
+        b.append(" latency=").append(getAverageLoadLatencyMs()).append("ms");
+        b.append(" cancelled=").append(mCancelledCount);
+        b.append(" prefetchHitRate=").append(getPrefetchHitRate());
+        b.append(" reused=").append(getBitmapReuseCount());
+        b.append(" allocated=").append(getBitmapAllocationCount());
         return b.toString();
     }
 }
@@ -17,15 +17,16 @@
 package androidx.leanback.leanbackshowcase.app.media;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.util.Log;
 
 import androidx.leanback.media.PlaybackGlue;
 import androidx.leanback.media.PlaybackTransportControlGlue;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Sample PlaybackSeekDataProvider that reads bitmaps stored on disk.
@@ -35,6 +36,8 @@ import java.io.File;
  */
 public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider {
 
+    static final String DEMO_ARCHIVE_PATH = "/sdcard/seek/thumbnails.lbtp";
+
     final Paint mPaint;
     final String mPathPattern;
     PlaybackSeekDiskDataProvider(long duration, long interval, String pathPattern) {
@@ -61,9 +64,9 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
         }
         String path = String.format(mPathPattern, (index + 1));
         if (new File(path).exists()) {
-            return BitmapFactory.decodeFile(path);
+            return mBitmapPool.decodeFile(path);
         } else {
-            Bitmap bmp = Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
+            Bitmap bmp = mBitmapPool.obtain(160, 160, Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bmp);
             canvas.drawColor(Color.YELLOW);
             canvas.drawText(path, 10, 80, mPaint);
@@ -74,14 +77,12 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
 
     /**
      * Helper function to set a demo seek provider on PlaybackTransportControlGlue based on
-     * duration.
+     * duration. A packed thumbnail archive is used when one has been pushed to the device,
+     * otherwise the individual frames are read.
      */
     public static void setDemoSeekProvider(final PlaybackTransportControlGlue glue) {
         if (glue.isPrepared()) {
-            glue.setSeekProvider(new PlaybackSeekDiskDataProvider(
-                    glue.getDuration(),
-                    glue.getDuration() / 100,
-                    "/sdcard/seek/frame_%04d.jpg"));
+            glue.setSeekProvider(createDemoSeekProvider(glue.getDuration()));
         } else {
             glue.addPlayerCallback(new PlaybackGlue.PlayerCallback() {
                 @Override
@@ -90,14 +91,24 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
                         glue.removePlayerCallback(this);
                         PlaybackTransportControlGlue transportControlGlue =
                                 (PlaybackTransportControlGlue) glue;
-                        transportControlGlue.setSeekProvider(new PlaybackSeekDiskDataProvider(
-                                transportControlGlue.getDuration(),
-                                transportControlGlue.getDuration() / 100,
-                                "/sdcard/seek/frame_%04d.jpg"));
+                        transportControlGlue.setSeekProvider(createDemoSeekProvider(
+                                transportControlGlue.getDuration()));
                     }
                 }
             });
         }
     }
 
+    private static PlaybackSeekAsyncDataProvider createDemoSeekProvider(long duration) {
+        if (new File(DEMO_ARCHIVE_PATH).exists()) {
+            try {
+                return new PlaybackSeekArchiveDataProvider(DEMO_ARCHIVE_PATH);
+            } catch (IOException ex) {
+                Log.e(TAG, "Cannot open " + DEMO_ARCHIVE_PATH, ex);
+            }
+        }
+        return new PlaybackSeekDiskDataProvider(duration, duration / 100,
+                "/sdcard/seek/frame_%04d.jpg");
+    }
+
 }
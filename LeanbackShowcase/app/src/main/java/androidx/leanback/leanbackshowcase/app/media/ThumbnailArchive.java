@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import androidx.collection.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reader of a packed trick play thumbnail archive, as written by
+ * tools/ThumbnailArchivePacker.java.
+ *
+ * The frames are tiled into JPEG sprite sheets of {@code columns x rows} tiles. The file is laid
+ * out as follows, all numbers big endian:
+ * <pre>
+ * int    magic "LBTP"
+ * int    version
+ * int    frame count
+ * int    tile width, tile height
+ * int    columns, rows
+ * int    sheet count
+ * long   seek position of each frame, in milliseconds
+ * long   offset and int length of each sheet
+ * byte[] the sheets
+ * </pre>
+ * The file is memory mapped, so looking up a frame is a read of the mapped index and showing it
+ * is a single region decode of the sheet that holds it, once that sheet is open. Opening a sheet
+ * reads all of it into the native decoder and indexes the JPEG, so enough sheets stay open to
+ * cover the loads the provider keeps on both sides of the scrub position by default.
+ */
+class ThumbnailArchive {
+
+    static final int MAGIC = 0x4C425450;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SHEET_ENTRY_SIZE = 12;
+
+    // region decoders of the most recently used sheets, scrubbing stays within a sheet for a while
+    private static final int MIN_OPEN_SHEETS = 3;
+
+    private final MappedByteBuffer mBuffer;
+    private final int mFrameCount;
+    private final int mTileWidth;
+    private final int mTileHeight;
+    private final int mColumns;
+    private final int mRows;
+    private final int mSheetCount;
+    private final LruCache<Integer, BitmapRegionDecoder> mDecoders;
+
+    ThumbnailArchive(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            // the mapping stays valid after the file is closed
+            mBuffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+        if (mBuffer.limit() < HEADER_SIZE || mBuffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a thumbnail archive: " + path);
+        }
+        if (mBuffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported thumbnail archive version " + mBuffer.getInt(4));
+        }
+        mFrameCount = mBuffer.getInt(8);
+        mTileWidth = mBuffer.getInt(12);
+        mTileHeight = mBuffer.getInt(16);
+        mColumns = mBuffer.getInt(20);
+        mRows = mBuffer.getInt(24);
+        mSheetCount = mBuffer.getInt(28);
+        if (mFrameCount < 0 || mColumns <= 0 || mRows <= 0
+                || mSheetCount != (mFrameCount + mColumns * mRows - 1) / (mColumns * mRows)
+                || getSheetEntryOffset(mSheetCount) > mBuffer.limit()) {
+            throw new IOException("Corrupted thumbnail archive: " + path);
+        }
+        // the sheets spanned by the loads kept on both sides of the scrub position, plus the one
+        // the window starts in
+        int tilesPerSheet = mColumns * mRows;
+        int windowSheets = (2 * PlaybackSeekAsyncDataProvider.DEFAULT_CANCEL_WINDOW
+                + tilesPerSheet - 1) / tilesPerSheet + 1;
+        mDecoders = new LruCache<>(Math.max(MIN_OPEN_SHEETS, windowSheets));
+    }
+
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    long[] getSeekPositions() {
+        long[] positions = new long[mFrameCount];
+        for (int i = 0; i < mFrameCount; i++) {
+            positions[i] = mBuffer.getLong(HEADER_SIZE + i * 8);
+        }
+        return positions;
+    }
+
+    /**
+     * Decodes the tile of a frame, into a bitmap of the pool when possible.
+     */
+    Bitmap decodeFrame(int index, BitmapReusePool pool) throws IOException {
+        int tilesPerSheet = mColumns * mRows;
+        BitmapRegionDecoder decoder = getDecoder(index / tilesPerSheet);
+        int tile = index % tilesPerSheet;
+        int left = (tile % mColumns) * mTileWidth;
+        int top = (tile / mColumns) * mTileHeight;
+        return pool.decodeRegion(decoder,
+                new Rect(left, top, left + mTileWidth, top + mTileHeight));
+    }
+
+    private BitmapRegionDecoder getDecoder(int sheet) throws IOException {
+        synchronized (mDecoders) {
+            BitmapRegionDecoder decoder = mDecoders.get(sheet);
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+
+        // opened outside of the lock, so that the other thumbnail thread keeps decoding from the
+        // sheets that are already open
+        int entry = getSheetEntryOffset(sheet);
+        long offset = mBuffer.getLong(entry);
+        int length = mBuffer.getInt(entry + 8);
+        if (offset < 0 || length < 0 || offset + length > mBuffer.limit()) {
+            throw new IOException("Corrupted thumbnail sheet " + sheet);
+        }
+        // read through a duplicate, the position of the shared buffer is never moved
+        ByteBuffer sheetBuffer = mBuffer.duplicate();
+        sheetBuffer.position((int) offset);
+        sheetBuffer.limit((int) (offset + length));
+        BitmapRegionDecoder decoder =
+                BitmapRegionDecoder.newInstance(new ByteBufferInputStream(sheetBuffer), false);
+
+        synchronized (mDecoders) {
+            BitmapRegionDecoder opened = mDecoders.get(sheet);
+            if (opened != null) {
+                // the other thread opened the sheet meanwhile, nobody else has seen this one
+                decoder.recycle();
+                return opened;
+            }
+            // evicted decoders are released by their finalizer, another thread may still be
+            // decoding with them
+            mDecoders.put(sheet, decoder);
+            return decoder;
+        }
+    }
+
+    private int getSheetEntryOffset(int sheet) {
+        return HEADER_SIZE + mFrameCount * 8 + sheet * SHEET_ENTRY_SIZE;
+    }
+
+    /**
+     * Streams the remaining bytes of a buffer, without copying them to the Java heap first.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package androidx.leanback.leanbackshowcase.app.room.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import androidx.leanback.widget.ObjectAdapter;
 import androidx.leanback.widget.Presenter;
 import androidx.leanback.widget.PresenterSelector;
@@ -28,6 +31,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class ListAdapter<T> extends ObjectAdapter {
 
@@ -35,11 +40,45 @@ public class ListAdapter<T> extends ObjectAdapter {
     private final static String TAG =  "ListAdapter";
     private final static Boolean DEBUG = false;
 
+    // Diffs of asynchronous submissions are computed on this executor, shared by all adapters
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
     private List<T> mItems = new ArrayList<>();
 
     // Un modifiable version of mItems
     private List<T> mUnmodifiableItems;
 
+    // Bumped by every change of mItems, a pending asynchronous diff computed against an older
+    // generation is stale and will be dropped
+    private int mGeneration;
+
+    private long mLastDiffTimeMs;
+
+    /**
+     * Computes the payload of a change between two versions of the same item, so the presenter
+     * can rebind only the part of the view which changed.
+     */
+    public interface ChangePayloadProvider<T> {
+
+        /**
+         * @return The payload describing the change, or null to rebind the whole item.
+         */
+        Object getChangePayload(T oldItem, T newItem);
+    }
+
+    /**
+     * Notified on the main thread once a list submitted through
+     * {@link #setItemsAsync(List, Comparator, Comparator, CommitCallback)} has been applied.
+     */
+    public interface CommitCallback {
+
+        /**
+         * @param diffTimeMs Time spent computing the difference with the previous list.
+         */
+        void onCommitted(long diffTimeMs);
+    }
+
     /**
      * Constructs an adapter with the given {@link PresenterSelector}.
      */
@@ -100,6 +139,7 @@ public class ListAdapter<T> extends ObjectAdapter {
      * @param item  The item to insert into the adapter.
      */
     public void add(int index, T item) {
+        mGeneration++;
         mItems.add(index, item);
         notifyItemRangeInserted(index, 1);
     }
@@ -116,6 +156,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         if (itemsCount == 0) {
             return;
         }
+        mGeneration++;
         mItems.addAll(index, items);
         notifyItemRangeInserted(index, itemsCount);
     }
@@ -129,6 +170,7 @@ public class ListAdapter<T> extends ObjectAdapter {
     public boolean remove(T item) {
         int index = mItems.indexOf(item);
         if (index >= 0) {
+            mGeneration++;
             mItems.remove(index);
             notifyItemRangeRemoved(index, 1);
         }
@@ -145,6 +187,7 @@ public class ListAdapter<T> extends ObjectAdapter {
      * @param item     The new item to be placed at given position.
      */
     public void replace(int position, T item) {
+        mGeneration++;
         mItems.set(position, item);
         notifyItemRangeChanged(position, 1);
     }
@@ -166,6 +209,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         for (int i = 0; i < itemsToRemove; i++) {
             mItems.remove(position);
         }
+        mGeneration++;
         notifyItemRangeRemoved(position, itemsToRemove);
         return itemsToRemove;
     }
@@ -178,6 +222,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         if (itemCount == 0) {
             return;
         }
+        mGeneration++;
         mItems.clear();
         notifyItemRangeRemoved(0, itemCount);
     }
@@ -207,35 +252,144 @@ public class ListAdapter<T> extends ObjectAdapter {
      */
     public void setItems(final List<T> itemList, final Comparator<T> sameItemComparator,
                          final Comparator<T> sameContentComparator) {
+        setItems(itemList, sameItemComparator, sameContentComparator, null);
+    }
+
+    /**
+     * Same as {@link #setItems(List, Comparator, Comparator)}, items whose content changed are
+     * notified with the payload returned by the payload provider.
+     *
+     * @param itemList              List of new Items
+     * @param sameItemComparator    The comparator to determine if two item are same or not
+     * @param sameContentComparator The comparator to determin if two item's content are same or not
+     * @param payloadProvider       Optional provider of the payload of changed items
+     */
+    public void setItems(final List<T> itemList, final Comparator<T> sameItemComparator,
+                         final Comparator<T> sameContentComparator,
+                         final ChangePayloadProvider<T> payloadProvider) {
         if (DEBUG) {
             Log.e(TAG, "new items: " + itemList);
             Log.e(TAG, "old items: " + mItems);
         }
 
-        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+        // a synchronous update supersedes all pending asynchronous ones
+        mGeneration++;
+        long startTime = SystemClock.uptimeMillis();
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(createDiffCallback(
+                mItems, itemList, sameItemComparator, sameContentComparator, payloadProvider));
+        mLastDiffTimeMs = SystemClock.uptimeMillis() - startTime;
+
+        applyItems(itemList, result);
+    }
+
+    /**
+     * Same as {@link #setItems(List, Comparator, Comparator)}, but the difference is computed on a
+     * background thread and applied on the main thread. Must be called from the main thread.
+     *
+     * When another list is submitted, or the adapter is modified, before the difference has been
+     * computed the result is stale: it is dropped and the callback is never notified.
+     *
+     * @param itemList              List of new Items
+     * @param sameItemComparator    The comparator to determine if two item are same or not
+     * @param sameContentComparator The comparator to determin if two item's content are same or not
+     * @param commitCallback        Optional callback notified once the new list is applied
+     */
+    public void setItemsAsync(final List<T> itemList, final Comparator<T> sameItemComparator,
+                              final Comparator<T> sameContentComparator,
+                              final CommitCallback commitCallback) {
+        setItemsAsync(itemList, sameItemComparator, sameContentComparator, null, commitCallback);
+    }
+
+    /**
+     * Same as {@link #setItemsAsync(List, Comparator, Comparator, CommitCallback)}, items whose
+     * content changed are notified with the payload returned by the payload provider.
+     */
+    public void setItemsAsync(final List<T> itemList, final Comparator<T> sameItemComparator,
+                              final Comparator<T> sameContentComparator,
+                              final ChangePayloadProvider<T> payloadProvider,
+                              final CommitCallback commitCallback) {
+        final int generation = ++mGeneration;
+        final List<T> oldItems = new ArrayList<>(mItems);
+        final List<T> newItems = new ArrayList<>(itemList);
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = SystemClock.uptimeMillis();
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(createDiffCallback(
+                        oldItems, newItems, sameItemComparator, sameContentComparator,
+                        payloadProvider));
+                final long diffTimeMs = SystemClock.uptimeMillis() - startTime;
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            if (DEBUG) {
+                                Log.d(TAG, "dropping stale diff of generation " + generation);
+                            }
+                            return;
+                        }
+                        if (DEBUG) {
+                            Log.d(TAG, "diff of " + oldItems.size() + " -> " + newItems.size()
+                                    + " items computed in " + diffTimeMs + " ms");
+                        }
+                        mLastDiffTimeMs = diffTimeMs;
+                        applyItems(newItems, result);
+                        if (commitCallback != null) {
+                            commitCallback.onCommitted(diffTimeMs);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the time spent computing the difference of the last applied list.
+     */
+    public long getLastDiffTimeMs() {
+        return mLastDiffTimeMs;
+    }
+
+    private DiffUtil.Callback createDiffCallback(final List<T> oldItems, final List<T> newItems,
+            final Comparator<T> sameItemComparator, final Comparator<T> sameContentComparator,
+            final ChangePayloadProvider<T> payloadProvider) {
+        return new DiffUtil.Callback() {
             @Override
             public int getOldListSize() {
-                return mItems.size();
+                return oldItems.size();
             }
 
             @Override
             public int getNewListSize() {
-                return itemList.size();
+                return newItems.size();
             }
 
             @Override
             public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                return sameItemComparator.compare(mItems.get(oldItemPosition),
-                        itemList.get(newItemPosition)) == 0;
+                return sameItemComparator.compare(oldItems.get(oldItemPosition),
+                        newItems.get(newItemPosition)) == 0;
             }
 
             @Override
             public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                return sameContentComparator.compare(mItems.get(oldItemPosition),
-                        itemList.get(newItemPosition)) == 0;
+                return sameContentComparator.compare(oldItems.get(oldItemPosition),
+                        newItems.get(newItemPosition)) == 0;
             }
-        });
 
+            @Override
+            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                if (payloadProvider == null) {
+                    return null;
+                }
+                return payloadProvider.getChangePayload(oldItems.get(oldItemPosition),
+                        newItems.get(newItemPosition));
+            }
+        };
+    }
+
+    private void applyItems(List<T> itemList, DiffUtil.DiffResult result) {
         mItems.clear();
         mItems.addAll(itemList);
 
@@ -257,18 +411,12 @@ public class ListAdapter<T> extends ObjectAdapter {
                 notifyItemRangeRemoved(position, count);
             }
 
-            /**
-             * Currently Leanback support library doesn't support move operation, use item range
-             * changed method to replace it as a temporal solution.
-             * @param fromPosition from position.
-             * @param toPosition to position.
-             */
             @Override
             public void onMoved(int fromPosition, int toPosition) {
                 if (DEBUG){
                     Log.e(TAG, "onMoved: ");
                 }
-                notifyItemRangeChanged(fromPosition, toPosition - fromPosition + 1);
+                notifyItemMoved(fromPosition, toPosition);
             }
 
             @Override
@@ -277,9 +425,9 @@ public class ListAdapter<T> extends ObjectAdapter {
                     Log.e(TAG, "onChanged: ");
                 }
 
-                // the support for payload has not been added to leanback support library, just
-                // ignore it currently.
-                notifyItemRangeChanged(position, count);
+                // the payload is handed to the presenter, which can skip rebinding what did
+                // not change
+                notifyItemRangeChanged(position, count, payload);
             }
         });
     }
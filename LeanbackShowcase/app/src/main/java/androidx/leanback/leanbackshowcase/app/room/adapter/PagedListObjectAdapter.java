@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.adapter;
+
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.leanback.widget.Presenter;
+import androidx.leanback.widget.PresenterSelector;
+import androidx.paging.AsyncPagedListDiffer;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import android.util.Log;
+
+/**
+ * An {@link ObjectAdapter} backed by a {@link PagedList}.
+ *
+ * The row only asks for the items it binds, and each {@link #get(int)} tells the paged list which
+ * position is being accessed, so pages are loaded around the focused position. Positions whose
+ * page is not loaded yet return null and should be rendered as placeholders. Combined with
+ * {@link PagedList.Config#maxSize} the pages far away from the focused position are dropped, so
+ * the memory used by a row depends on what is visible rather than on the size of the category.
+ */
+public class PagedListObjectAdapter<T> extends ObjectAdapter {
+
+    // For debugging purpose
+    private final static String TAG = "PagedListObjectAdapter";
+    private final static Boolean DEBUG = false;
+
+    private final AsyncPagedListDiffer<T> mDiffer;
+
+    private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            if (DEBUG) {
+                Log.d(TAG, "onInserted: " + position + ", " + count);
+            }
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (DEBUG) {
+                Log.d(TAG, "onRemoved: " + position + ", " + count);
+            }
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (DEBUG) {
+                Log.d(TAG, "onMoved: " + fromPosition + " -> " + toPosition);
+            }
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            if (DEBUG) {
+                Log.d(TAG, "onChanged: " + position + ", " + count);
+            }
+            notifyItemRangeChanged(position, count, payload);
+        }
+    };
+
+    /**
+     * Constructs an adapter with the given {@link PresenterSelector}.
+     */
+    public PagedListObjectAdapter(PresenterSelector presenterSelector,
+            DiffUtil.ItemCallback<T> itemCallback) {
+        super(presenterSelector);
+        mDiffer = new AsyncPagedListDiffer<>(mUpdateCallback,
+                new AsyncDifferConfig.Builder<>(itemCallback).build());
+    }
+
+    /**
+     * Constructs an adapter that uses the given {@link Presenter} for all items.
+     */
+    public PagedListObjectAdapter(Presenter presenter, DiffUtil.ItemCallback<T> itemCallback) {
+        super(presenter);
+        mDiffer = new AsyncPagedListDiffer<>(mUpdateCallback,
+                new AsyncDifferConfig.Builder<>(itemCallback).build());
+    }
+
+    /**
+     * Set a new paged list to the adapter. The difference with the current list is computed on a
+     * background thread and dispatched on the main thread.
+     *
+     * @param pagedList The new paged list, or null to clear the adapter.
+     */
+    public void submitList(PagedList<T> pagedList) {
+        mDiffer.submitList(pagedList);
+    }
+
+    /**
+     * Returns the paged list currently displayed by the adapter.
+     */
+    public PagedList<T> getCurrentList() {
+        return mDiffer.getCurrentList();
+    }
+
+    @Override
+    public int size() {
+        return mDiffer.getItemCount();
+    }
+
+    /**
+     * Returns the item at the given position, or null when it is a placeholder for an item which
+     * has not been loaded yet. Accessing a position triggers loading the pages around it.
+     */
+    @Override
+    public T get(int position) {
+        return mDiffer.getItem(position);
+    }
+
+    @Override
+    public boolean isImmediateNotifySupported() {
+        return true;
+    }
+}
@@ -36,6 +36,12 @@ public class AppConfiguration {
     // used to simulate network latency when the search operation is performed
     public static boolean IS_SEARCH_LATENCY_ENABLED = false;
 
+    // load the category rows page by page instead of binding whole categories
+    public static boolean IS_PAGED_ROWS_ENABLED = true;
+
+    // maximum size of the downloaded videos and images, the least recently watched are evicted
+    public static long DOWNLOAD_QUOTA_BYTES = 2L * 1024 * 1024 * 1024;
+
     // only use small data set (live_movie_debug.json) for debugging
     public static boolean IS_DEBUGGING_VERSION = false;
 }
@@ -42,6 +42,7 @@ import androidx.leanback.leanbackshowcase.app.room.di.adapter.qualifier.DetailFr
 import androidx.leanback.leanbackshowcase.app.room.di.adapter.qualifier.ListAdapterForRelatedRowQualifier;
 import androidx.leanback.leanbackshowcase.app.room.di.subcomponentinjection.DaggerApplicationComponent;
 import androidx.leanback.leanbackshowcase.app.room.network.NetworkLiveData;
+import androidx.leanback.leanbackshowcase.app.room.network.StorageQuotaManager;
 import androidx.leanback.leanbackshowcase.app.room.viewmodel.VideosViewModel;
 import androidx.leanback.widget.Action;
 import androidx.leanback.widget.ArrayObjectAdapter;
@@ -245,7 +246,7 @@ public class LiveDataDetailViewWithVideoBackgroundFragment extends DetailsSuppor
                                     }, new Comparator<VideoEntity>() {
                                         @Override
                                         public int compare(VideoEntity o1, VideoEntity o2) {
-                                            return o1.equals(o2) ? 0 : -1;
+                                            return o1.isSameContent(o2) ? 0 : -1;
                                         }
                                     });
                         }
@@ -294,6 +295,7 @@ public class LiveDataDetailViewWithVideoBackgroundFragment extends DetailsSuppor
                 getActivity().findViewById(R.id.renting_progressbar).setVisibility(View.VISIBLE);
                 getActivity().findViewById(R.id.loading_renting).setVisibility(View.VISIBLE);
             } else if (action == mActionPlay) {
+                StorageQuotaManager.getInstance().onVideoWatched(mObservedVideo.getId());
                 mDetailsBgController.switchToVideo();
             } else if (action == mActionPreview) {
                 mDetailsBgController.switchToVideo();
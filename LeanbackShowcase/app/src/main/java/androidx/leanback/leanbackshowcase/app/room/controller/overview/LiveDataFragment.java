@@ -26,6 +26,7 @@ import androidx.annotation.Nullable;
 import androidx.leanback.app.BrowseSupportFragment;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.adapter.ListAdapter;
+import androidx.leanback.leanbackshowcase.app.room.adapter.PagedListObjectAdapter;
 import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
@@ -40,7 +41,9 @@ import androidx.leanback.leanbackshowcase.app.room.viewmodel.VideosViewModel;
 import androidx.leanback.widget.HeaderItem;
 import androidx.leanback.widget.ListRow;
 import androidx.leanback.widget.OnItemViewClickedListener;
+import androidx.leanback.widget.ObjectAdapter;
 import androidx.leanback.widget.OnItemViewSelectedListener;
+import androidx.recyclerview.widget.DiffUtil;
 
 import android.util.Log;
 import android.view.View;
@@ -94,6 +97,24 @@ public class LiveDataFragment extends BrowseSupportFragment
     @Inject
     VideoCardPresenter videoCardPresenter;
 
+    private static final DiffUtil.ItemCallback<VideoEntity> VIDEO_DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<VideoEntity>() {
+                @Override
+                public boolean areItemsTheSame(VideoEntity oldItem, VideoEntity newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(VideoEntity oldItem, VideoEntity newItem) {
+                    return oldItem.isSameContent(newItem);
+                }
+
+                @Override
+                public Object getChangePayload(VideoEntity oldItem, VideoEntity newItem) {
+                    return VideoCardPresenter.getChangePayload(oldItem, newItem);
+                }
+            };
+
     public DataLoadedListener getDataLoadedListener(){
         return this;
     }
@@ -136,6 +157,12 @@ public class LiveDataFragment extends BrowseSupportFragment
         subscribeUi(mViewModel);
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        DownloadCompleteBroadcastReceiver.getInstance().unregisterListener(this);
+    }
+
     @Override
     public void onDataLoaded() {
         startEntranceTransition();
@@ -247,13 +274,20 @@ public class LiveDataFragment extends BrowseSupportFragment
                             // The ListRow here cannot be used with dependency injection, since it
                             // rely on the run time information getCategoryName
                             for (CategoryEntity categoryEntity : categoryEntities) {
+                                ObjectAdapter rowAdapter;
+                                if (AppConfiguration.IS_PAGED_ROWS_ENABLED) {
+                                    rowAdapter = new PagedListObjectAdapter<>(videoCardPresenter,
+                                            VIDEO_DIFF_CALLBACK);
+                                } else {
+                                    rowAdapter = new ListAdapter<>(videoCardPresenter);
+                                }
                                 ListRow row = new ListRow(
                                         new HeaderItem(categoryEntity.getCategoryName()),
-                                        new ListAdapter<>(videoCardPresenter));
+                                        rowAdapter);
                                 rows.add(row);
                             }
 
-                            mRowsAdapter.setItems(rows, new Comparator<ListRow>() {
+                            mRowsAdapter.setItemsAsync(rows, new Comparator<ListRow>() {
                                 @Override
                                 public int compare(ListRow o1, ListRow o2) {
                                     return o1.getId() == o2.getId() ? 0 : -1;
@@ -264,6 +298,14 @@ public class LiveDataFragment extends BrowseSupportFragment
                                     return o1.getHeaderItem().getName()
                                             .equals(o2.getHeaderItem().getName()) ? 0 : -1;
                                 }
+                            }, new ListAdapter.CommitCallback() {
+                                @Override
+                                public void onCommitted(long diffTimeMs) {
+                                    if (DEBUG) {
+                                        Log.d(TAG, "rows updated, diff computed in "
+                                                + diffTimeMs + " ms");
+                                    }
+                                }
                             });
                         }
                     }
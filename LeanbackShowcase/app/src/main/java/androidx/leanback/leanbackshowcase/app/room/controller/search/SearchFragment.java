@@ -115,7 +115,6 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
 
         if (!TextUtils.isEmpty(newQuery) && !newQuery.equals("nil")) {
             getActivity().findViewById(R.id.search_progressbar).setVisibility(View.VISIBLE);
-            newQuery = "%" + newQuery + "%";
             mViewModel.setQueryMessage(newQuery);
         }
         return true;
@@ -126,8 +125,7 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
 
         if (!TextUtils.isEmpty(query) && !query.equals("nil")) {
             getActivity().findViewById(R.id.search_progressbar).setVisibility(View.VISIBLE);
-            query = "%" + query + "%";
-            mViewModel.setQueryMessage(query);
+            mViewModel.submitQueryMessage(query);
         }
         return true;
     }
@@ -151,7 +149,7 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
                             }, new Comparator<VideoEntity>() {
                                 @Override
                                 public int compare(VideoEntity o1, VideoEntity o2) {
-                                    return o1.equals(o2) ? 0 : -1;
+                                    return o1.isSameContent(o2) ? 0 : -1;
                                 }
                             });
                         } else {
@@ -14,19 +14,133 @@
 
 package androidx.leanback.leanbackshowcase.app.room.db;
 
+import android.content.Context;
+import androidx.annotation.NonNull;
 import androidx.room.Database;
+import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.DownloadTaskDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.DownloadTaskEntity;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoFtsEntity;
 
 
-@Database(entities = {VideoEntity.class, CategoryEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {VideoEntity.class, CategoryEntity.class, VideoFtsEntity.class,
+        DownloadTaskEntity.class}, version = 5, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase{
     public static final String DATABASE_NAME = "leanback_showcase.db";
 
+    /**
+     * Adds the full text index over the videos and builds it from the existing rows, Room
+     * re-creates the triggers keeping it in sync after the migration.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `"
+                    + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + "` USING FTS4(`"
+                    + DatabaseColumnConstant.VideoEntry.COLUMN_NAME + "` TEXT, `"
+                    + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + "` TEXT, "
+                    + "tokenize=unicode61, content=`"
+                    + DatabaseColumnConstant.VideoEntry.TABLE_NAME + "`)");
+            database.execSQL("INSERT INTO " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME
+                    + "(" + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + ") VALUES('rebuild')");
+        }
+    };
+
+    /**
+     * Adds the row version used to compare the content of two videos in constant time.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+                    + " ADD COLUMN " + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION
+                    + " INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Adds the persisted download queue.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME + "` (`"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_AUTO_GENERATE_ID
+                    + "` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_VIDEO_ID
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CATEGORY + "` TEXT, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_URL + "` TEXT, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_PRIORITY
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_ATTEMPTS
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_NEXT_ATTEMPT_AT
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STARTED_AT
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CREATED_AT
+                    + "` INTEGER NOT NULL, `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_LOCAL_URI + "` TEXT)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_"
+                    + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME + "_"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID + "` ON `"
+                    + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME + "` (`"
+                    + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID + "`)");
+        }
+    };
+
+    /**
+     * Adds the storage bookkeeping of the downloaded resources.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+                    + " ADD COLUMN " + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES
+                    + " INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+                    + " ADD COLUMN " + DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_AT
+                    + " INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // All the migrations, to be added to every database builder
+    public static final Migration[] MIGRATIONS =
+            {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5};
+
+    private static AppDatabase sInstance;
+
+    /**
+     * Database shared by the background components (download scheduler, storage manager) which
+     * are not created through dependency injection.
+     */
+    public static synchronized AppDatabase getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class,
+                    DATABASE_NAME)
+                    .addMigrations(MIGRATIONS)
+                    .build();
+        }
+        return sInstance;
+    }
+
     public abstract VideoDao videoDao();
 
     public abstract CategoryDao categoryDao();
+
+    public abstract DownloadTaskDao downloadTaskDao();
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Okapi BM25 relevance of an FTS4 match, computed from {@code matchinfo(table, 'pcnalx')}.
+ *
+ * FTS4 has no ranking function and the platform cannot register one, so the score is computed
+ * in Java from the match statistics of each row.
+ */
+public final class Bm25 {
+
+    // matchinfo format the score is computed from
+    public static final String MATCHINFO_FORMAT = "pcnalx";
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private Bm25() {
+    }
+
+    /**
+     * @param matchinfo The {@link #MATCHINFO_FORMAT} matchinfo of a row
+     * @param weights   Weight of each column of the index
+     * @return relevance of the row, higher is better
+     */
+    public static double score(byte[] matchinfo, double[] weights) {
+        // 32-bit unsigned integers in the byte order of the device
+        ByteBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        long rows = info.getInt(8) & 0xffffffffL;
+        // a: average tokens per column, l: tokens per column of this row, x: 3 values per
+        // phrase and column
+        int averageLengths = 3;
+        int lengths = averageLengths + columns;
+        int hits = lengths + columns;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < weights.length; column++) {
+                int x = hits + 3 * (phrase * columns + column);
+                long hitsInRow = info.getInt(x * 4) & 0xffffffffL;
+                if (hitsInRow == 0) {
+                    continue;
+                }
+                long rowsWithHits = info.getInt((x + 2) * 4) & 0xffffffffL;
+                double averageLength = Math.max(1, info.getInt((averageLengths + column) * 4));
+                double length = info.getInt((lengths + column) * 4);
+
+                // floored so that a term found in most rows still counts for a little
+                double idf = Math.max(0.01,
+                        Math.log((rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5)));
+                double tf = hitsInRow * (K1 + 1)
+                        / (hitsInRow + K1 * (1 - B + B * length / averageLength));
+                score += weights[column] * idf * tf;
+            }
+        }
+        return score;
+    }
+}
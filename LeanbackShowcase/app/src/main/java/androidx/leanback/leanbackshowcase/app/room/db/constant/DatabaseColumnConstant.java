@@ -68,6 +68,69 @@ public class DatabaseColumnConstant {
         public static final String COLUMN_CARD_IMG_CACHE = "card_image_downloaded_uri";
 
         public static final String COLUMN_VIDEO_STATUS = "working_status";
+
+        // Version of the row, incremented on every update of the video.
+        public static final String COLUMN_VERSION = "row_version";
+
+        // Total size of the downloaded resources of the video, in bytes.
+        public static final String COLUMN_DOWNLOADED_BYTES = "downloaded_bytes";
+
+        // Last time (ms since epoch) the video was watched or downloaded.
+        public static final String COLUMN_LAST_WATCHED_AT = "last_watched_at";
+    }
+
+    /**
+     * Define the full text index over the video entry, its columns mirror the video entry
+     */
+    public static final class VideoFtsEntry {
+
+        // Name of the full text search table.
+        public static final String TABLE_NAME = "videos_fts";
+    }
+
+    /**
+     * Define the name of column in download task entry
+     */
+    public static final class DownloadTaskEntry {
+
+        // Name of the download task table.
+        public static final String TABLE_NAME = "download_tasks";
+
+        // Name of auto generated id name
+        public static final String COLUMN_AUTO_GENERATE_ID = "_id";
+
+        // Id of the video the downloaded resource belongs to.
+        public static final String COLUMN_VIDEO_ID = "video_id";
+
+        // Resource category (video/ background/ card).
+        public static final String COLUMN_CATEGORY = "category";
+
+        // The url of the resource to download.
+        public static final String COLUMN_URL = "url";
+
+        // Tasks with a lower priority value are started first.
+        public static final String COLUMN_PRIORITY = "priority";
+
+        // State of the task (pending/ running/ completed).
+        public static final String COLUMN_STATE = "state";
+
+        // Id generated by the download manager for the running transfer.
+        public static final String COLUMN_DOWNLOAD_ID = "download_manager_id";
+
+        // Number of transfers started for this task.
+        public static final String COLUMN_ATTEMPTS = "attempts";
+
+        // Earliest time (ms since epoch) at which the task can be started.
+        public static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+
+        // Time (ms since epoch) at which the running transfer was started.
+        public static final String COLUMN_STARTED_AT = "started_at";
+
+        // Time (ms since epoch) at which the task was created.
+        public static final String COLUMN_CREATED_AT = "created_at";
+
+        // The uri to the downloaded resource once the task is completed.
+        public static final String COLUMN_LOCAL_URI = "local_uri";
     }
 
     /**
@@ -35,4 +35,7 @@ public interface CategoryDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertCategory(CategoryEntity categoryEntity);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAllCategories(List<CategoryEntity> categories);
+
 }
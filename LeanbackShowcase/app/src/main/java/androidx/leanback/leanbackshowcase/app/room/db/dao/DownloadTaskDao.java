@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.dao;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.DownloadTaskEntity;
+
+import java.util.List;
+
+@Dao
+public interface DownloadTaskDao {
+    @Insert
+    void insertTasks(List<DownloadTaskEntity> tasks);
+
+    @Update
+    void updateTask(DownloadTaskEntity task);
+
+    @Delete
+    void deleteTask(DownloadTaskEntity task);
+
+    @Query("SELECT * FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID
+            + " = :downloadId")
+    DownloadTaskEntity loadTaskByDownloadId(long downloadId);
+
+    @Query("SELECT * FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " = :state")
+    List<DownloadTaskEntity> loadTasksInState(int state);
+
+    @Query("SELECT COUNT(*) FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " = :state")
+    int countTasksInState(int state);
+
+    /**
+     * Tasks which are not completed yet for the given resource of a video.
+     */
+    @Query("SELECT COUNT(*) FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_VIDEO_ID + " = :videoId"
+            + " AND " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CATEGORY + " = :category"
+            + " AND " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " != "
+            + DownloadTaskEntity.STATE_COMPLETED)
+    int countActiveTasks(long videoId, String category);
+
+    /**
+     * Tasks which are not completed yet for any resource of a video.
+     */
+    @Query("SELECT COUNT(*) FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_VIDEO_ID + " = :videoId"
+            + " AND " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " != "
+            + DownloadTaskEntity.STATE_COMPLETED)
+    int countActiveTasksOfVideo(long videoId);
+
+    /**
+     * Pending tasks which can be started now, by priority then in creation order.
+     */
+    @Query("SELECT * FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " = "
+            + DownloadTaskEntity.STATE_PENDING
+            + " AND " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_NEXT_ATTEMPT_AT
+            + " <= :now"
+            + " ORDER BY " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_PRIORITY + ", "
+            + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CREATED_AT
+            + " LIMIT :limit")
+    List<DownloadTaskEntity> loadRunnableTasks(long now, int limit);
+
+    /**
+     * Earliest retry time of the pending tasks, or null when there is none.
+     */
+    @Query("SELECT MIN(" + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_NEXT_ATTEMPT_AT
+            + ") FROM " + DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE + " = "
+            + DownloadTaskEntity.STATE_PENDING)
+    Long loadNextAttemptTime();
+}
@@ -17,11 +17,13 @@
 package androidx.leanback.leanbackshowcase.app.room.db.dao;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
+import androidx.room.ColumnInfo;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.leanback.leanbackshowcase.app.room.db.Bm25;
 import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 
@@ -29,14 +31,59 @@ import java.util.List;
 
 @Dao
 public interface VideoDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertAllVideos(List<VideoEntity> videos);
+    /**
+     * Inserts videos that are not in the database yet, existing ones are written through
+     * {@link #updateFeedColumns} so that their version keeps growing.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertNewVideos(List<VideoEntity> videos);
+
+    /**
+     * The id of every video, keyed by the url of its content.
+     */
+    @Query("SELECT " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " AS "
+            + VideoKey.COLUMN_ID + ", " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_URL
+            + " AS " + VideoKey.COLUMN_VIDEO_URL
+            + " FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME)
+    List<VideoKey> loadVideoKeys();
+
+    /**
+     * Writes the columns that come from the feed, and bumps the row version if any of them
+     * changed. The columns written by the app, such as the downloads, are left alone.
+     */
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + " = :category, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_NAME + " = :title, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_DESC + " = :description, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMAGE_URL + " = :cardImageUrl, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_URL + " = :bgImageUrl, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_STUDIO + " = :studio, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_TRAILER_URL + " = :trailerVideoUrl, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId"
+            + " AND (" + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + " IS NOT :category"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_NAME + " IS NOT :title"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_DESC + " IS NOT :description"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMAGE_URL
+            + " IS NOT :cardImageUrl"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_URL + " IS NOT :bgImageUrl"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_STUDIO + " IS NOT :studio"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_TRAILER_URL
+            + " IS NOT :trailerVideoUrl)")
+    int updateFeedColumns(long videoId, String category, String title, String description,
+            String cardImageUrl, String bgImageUrl, String studio, String trailerVideoUrl);
 
     @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
             + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID
             + " = :videoId")
     LiveData<VideoEntity> loadVideoById(long videoId);
 
+    @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID
+            + " = :videoId")
+    VideoEntity loadVideoByIdSync(long videoId);
+
 
     @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
             + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY
@@ -44,12 +91,113 @@ public interface VideoDao {
     LiveData<List<VideoEntity>> loadVideoInSameCateogry(String category);
 
     @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
-            + " WHERE "+ DatabaseColumnConstant.VideoEntry.COLUMN_NAME
-            + " LIKE " + ":queryMessage"
-            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY
-            +" LIKE " + ":queryMessage")
-    LiveData<List<VideoEntity>> searchVideos(String queryMessage);
-
-    @Update(onConflict = OnConflictStrategy.REPLACE)
-    void updateVideo(VideoEntity video);
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY
+            + " = :category ORDER BY " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID)
+    DataSource.Factory<Integer, VideoEntity> loadPagedVideoInSameCategory(String category);
+
+    /**
+     * Full text search over video names and categories. Only the id and the match statistics of
+     * each match are read, so that the matches can be ranked before any video is loaded.
+     *
+     * @param match FTS match expression
+     * @see Bm25
+     */
+    @Query("SELECT rowid AS " + FtsMatch.COLUMN_ID + ", matchinfo("
+            + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + ", '" + Bm25.MATCHINFO_FORMAT
+            + "') AS " + FtsMatch.COLUMN_MATCHINFO
+            + " FROM " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + " MATCH :match")
+    LiveData<List<FtsMatch>> matchVideos(String match);
+
+    @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID
+            + " IN (:videoIds)")
+    LiveData<List<VideoEntity>> loadVideosByIds(List<Long> videoIds);
+
+    /**
+     * A row matched by {@link #matchVideos(String)}.
+     */
+    class FtsMatch {
+        static final String COLUMN_ID = "id";
+        static final String COLUMN_MATCHINFO = "matchinfo";
+
+        @ColumnInfo(name = COLUMN_ID)
+        public long id;
+
+        @ColumnInfo(name = COLUMN_MATCHINFO)
+        public byte[] matchinfo;
+    }
+
+    /**
+     * The id and content url of a video, see {@link #loadVideoKeys()}.
+     */
+    class VideoKey {
+        static final String COLUMN_ID = "id";
+        static final String COLUMN_VIDEO_URL = "video_url";
+
+        @ColumnInfo(name = COLUMN_ID)
+        public long id;
+
+        @ColumnInfo(name = COLUMN_VIDEO_URL)
+        public String videoUrl;
+    }
+
+    // Targeted updates of a single column, each of them bumps the row version
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_CACHE + " = :path, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateVideoLocalStorageUrl(long videoId, String path);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_CACHE + " = :path, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateVideoBgImageLocalStorageUrl(long videoId, String path);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMG_CACHE + " = :path, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateVideoCardImageLocalStorageUrl(long videoId, String path);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS + " = :status, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateStatus(long videoId, String status);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_IS_RENTED + " = 1, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " = "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VERSION + " + 1"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int markRented(long videoId);
+
+    // Storage bookkeeping, these updates leave the row version alone
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_AT + " = :time"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateLastWatchedAt(long videoId, long time);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + " = :bytes"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    int updateDownloadedBytes(long videoId, long bytes);
+
+    /**
+     * Videos with at least one downloaded resource, least recently watched first.
+     */
+    @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_CACHE + " != ''"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_CACHE + " != ''"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMG_CACHE + " != ''"
+            + " ORDER BY " + DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_AT)
+    List<VideoEntity> loadDownloadedVideos();
 }
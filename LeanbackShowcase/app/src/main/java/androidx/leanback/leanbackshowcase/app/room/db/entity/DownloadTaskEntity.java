@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+
+/**
+ * A resource of a video (video/ background/ card) to download, persisted so the download queue
+ * survives the process.
+ */
+@Entity(tableName = DatabaseColumnConstant.DownloadTaskEntry.TABLE_NAME,
+        indices = {@Index(DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID)})
+public class DownloadTaskEntity {
+
+    // Waiting for a free transfer slot, or for its next retry.
+    public static final int STATE_PENDING = 0;
+
+    // Transferred by the download manager.
+    public static final int STATE_RUNNING = 1;
+
+    // Downloaded, waiting to be delivered to the listeners.
+    public static final int STATE_COMPLETED = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_AUTO_GENERATE_ID)
+    private long mId;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_VIDEO_ID)
+    private long mVideoId;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CATEGORY)
+    private String mCategory;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_URL)
+    private String mUrl;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_PRIORITY)
+    private int mPriority;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STATE)
+    private int mState;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_DOWNLOAD_ID)
+    private long mDownloadId;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_ATTEMPTS)
+    private int mAttempts;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_NEXT_ATTEMPT_AT)
+    private long mNextAttemptAt;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_STARTED_AT)
+    private long mStartedAt;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_CREATED_AT)
+    private long mCreatedAt;
+
+    @ColumnInfo(name = DatabaseColumnConstant.DownloadTaskEntry.COLUMN_LOCAL_URI)
+    private String mLocalUri;
+
+    public long getId() {
+        return mId;
+    }
+
+    public void setId(long id) {
+        mId = id;
+    }
+
+    public long getVideoId() {
+        return mVideoId;
+    }
+
+    public void setVideoId(long videoId) {
+        mVideoId = videoId;
+    }
+
+    public String getCategory() {
+        return mCategory;
+    }
+
+    public void setCategory(String category) {
+        mCategory = category;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public void setUrl(String url) {
+        mUrl = url;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public void setState(int state) {
+        mState = state;
+    }
+
+    public long getDownloadId() {
+        return mDownloadId;
+    }
+
+    public void setDownloadId(long downloadId) {
+        mDownloadId = downloadId;
+    }
+
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    public void setAttempts(int attempts) {
+        mAttempts = attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return mNextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        mNextAttemptAt = nextAttemptAt;
+    }
+
+    public long getStartedAt() {
+        return mStartedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        mStartedAt = startedAt;
+    }
+
+    public long getCreatedAt() {
+        return mCreatedAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        mCreatedAt = createdAt;
+    }
+
+    public String getLocalUri() {
+        return mLocalUri;
+    }
+
+    public void setLocalUri(String localUri) {
+        mLocalUri = localUri;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadTaskEntity{" +
+                "mId=" + mId +
+                ", mVideoId=" + mVideoId +
+                ", mCategory='" + mCategory + '\'' +
+                ", mPriority=" + mPriority +
+                ", mState=" + mState +
+                ", mDownloadId=" + mDownloadId +
+                ", mAttempts=" + mAttempts +
+                '}';
+    }
+}
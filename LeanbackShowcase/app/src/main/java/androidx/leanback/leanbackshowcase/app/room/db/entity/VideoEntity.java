@@ -103,6 +103,18 @@ public class VideoEntity implements  Parcelable {
     @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS)
     private String mStatus;
 
+    // Bumped by every write to the row, two entities with the same id and version have the same
+    // content
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_VERSION)
+    private long mVersion;
+
+    // Storage bookkeeping, written without bumping the version since it is never displayed
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES)
+    private long mDownloadedBytes;
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_AT)
+    private long mLastWatchedAt;
+
     /**
      * The constructor is requried by room database
      */
@@ -139,6 +151,47 @@ public class VideoEntity implements  Parcelable {
         this.mRented = mIsRented;
     }
 
+    /**
+     * get the version of the row
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * set the version of the row
+     */
+    public void setVersion(long version) {
+        mVersion = version;
+    }
+
+    public long getDownloadedBytes() {
+        return mDownloadedBytes;
+    }
+
+    public void setDownloadedBytes(long downloadedBytes) {
+        mDownloadedBytes = downloadedBytes;
+    }
+
+    public long getLastWatchedAt() {
+        return mLastWatchedAt;
+    }
+
+    public void setLastWatchedAt(long lastWatchedAt) {
+        mLastWatchedAt = lastWatchedAt;
+    }
+
+    /**
+     * Cheap alternative to {@link #equals(Object)} for entities loaded from the database: every
+     * write to a row bumps its version, so comparing the id and version is enough.
+     *
+     * @param other another video entity loaded from the database
+     * @return If those two video entities have the same content or not
+     */
+    public boolean isSameContent(VideoEntity other) {
+        return other != null && mId == other.mId && mVersion == other.mVersion;
+    }
+
     /**
      * setId
      */
@@ -322,6 +375,7 @@ public class VideoEntity implements  Parcelable {
         mVideoLocalStorageUrl = in.readString();
         mStatus = in.readString();
         mTrailerVideoUrl = in.readString();
+        mVersion = in.readLong();
 
         // Rented information (boolean) will be passed as a byte type
         mRented = in.readByte() != 0;
@@ -366,6 +420,7 @@ public class VideoEntity implements  Parcelable {
         dest.writeString(mVideoCardImageLocalStorageUrl);
         dest.writeString(mStatus);
         dest.writeString(mTrailerVideoUrl);
+        dest.writeLong(mVersion);
 
         // Rented information (boolean) will be passed as a byte type
         dest.writeByte((byte) (mRented ? 1:0));
@@ -394,6 +449,7 @@ public class VideoEntity implements  Parcelable {
                 ", mTrailerVideoUrl='" + mTrailerVideoUrl + '\'' +
                 ", mRented=" + mRented +
                 ", mStatus='" + mStatus + '\'' +
+                ", mVersion=" + mVersion +
                 '}';
     }
 
@@ -414,6 +470,8 @@ public class VideoEntity implements  Parcelable {
 
         if (mRented != that.mRented) return false;
 
+        if (mVersion != that.mVersion) return false;
+
         if (mDescription != null ? !mDescription.equals(that.mDescription) :
                 that.mDescription != null)
             return false;
@@ -470,6 +528,7 @@ public class VideoEntity implements  Parcelable {
         result = 31 * result + (mVideoUrl != null ? mVideoUrl.hashCode() : 0);
         result = 31 * result + (mRented ? 1 : 0);
         result = 31 * result + (mStatus != null ? mStatus.hashCode() : 0);
+        result = 31 * result + (int) (mVersion ^ (mVersion >>> 32));
         return result;
     }
 }
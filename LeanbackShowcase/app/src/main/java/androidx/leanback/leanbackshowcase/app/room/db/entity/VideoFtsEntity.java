@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+
+/**
+ * Full text index over the searchable columns of {@link VideoEntity}.
+ *
+ * The table is an external content table, Room keeps it in sync with the videos table through
+ * triggers and its rowid is the id of the indexed video.
+ */
+@Fts4(contentEntity = VideoEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME)
+public class VideoFtsEntity {
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_NAME)
+    private String mTitle;
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY)
+    private String mCategory;
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String title) {
+        mTitle = title;
+    }
+
+    public String getCategory() {
+        return mCategory;
+    }
+
+    public void setCategory(String category) {
+        mCategory = category;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread safe cache of live data keyed by query parameter.
+ *
+ * Entries are kept in access order. Once the cache grows past its capacity the least recently
+ * used entries without any observer are evicted, so a live data which is still rendered somewhere
+ * is never dropped and re-created behind its observer's back. The entry being returned is never
+ * evicted either, its caller is about to observe it. If every other entry is observed the cache
+ * temporarily grows beyond its capacity and is trimmed on the next access.
+ */
+class LiveDataCache<K, V extends LiveData<?>> {
+
+    /**
+     * Creates the live data when it is not in the cache.
+     */
+    interface Loader<K, V> {
+        V load(K key);
+    }
+
+    private final int mMaxSize;
+    private final Loader<K, V> mLoader;
+    private final LinkedHashMap<K, V> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    LiveDataCache(int maxSize, Loader<K, V> loader) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mLoader = loader;
+    }
+
+    /**
+     * Returns the cached live data for the key, loading it on a miss.
+     */
+    synchronized V get(K key) {
+        V value = mEntries.get(key);
+        if (value != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+            value = mLoader.load(key);
+            mEntries.put(key, value);
+        }
+        // also trim on hits, observers of older entries may have gone away since the last miss
+        trimToSize(key);
+        return value;
+    }
+
+    private void trimToSize(K keep) {
+        Iterator<Map.Entry<K, V>> iterator = mEntries.entrySet().iterator();
+        while (mEntries.size() > mMaxSize && iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (!entry.getKey().equals(keep) && !entry.getValue().hasObservers()) {
+                iterator.remove();
+                mEvictionCount++;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LiveDataCache[size=" + mEntries.size() + ", maxSize=" + mMaxSize + ", hits="
+                + mHitCount + ", misses=" + mMissCount + ", evictions=" + mEvictionCount + "]";
+    }
+}
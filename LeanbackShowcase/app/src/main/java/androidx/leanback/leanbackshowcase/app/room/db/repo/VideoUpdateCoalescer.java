@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the column updates of the videos.
+ *
+ * Updates submitted within the same window are written together in a single transaction, so
+ * Room's invalidation tracker notifies the observers once per window instead of once per update.
+ * A later update of the same column of the same video replaces the pending one.
+ */
+class VideoUpdateCoalescer {
+
+    // For debugging purpose
+    private static final boolean DEBUG = false;
+    private static final String TAG = "VideoUpdateCoalescer";
+
+    /**
+     * Writes the column updates of a flush.
+     */
+    interface Writer {
+        /**
+         * Writes a single column update, always called inside the flush transaction.
+         */
+        void write(long videoId, String column, String value);
+
+        /**
+         * Called once the flush transaction has committed, so that other threads see its writes.
+         */
+        void onFlushed();
+    }
+
+    private static final class PendingUpdate {
+        final long mVideoId;
+        final String mColumn;
+        final String mValue;
+
+        PendingUpdate(long videoId, String column, String value) {
+            mVideoId = videoId;
+            mColumn = column;
+            mValue = value;
+        }
+    }
+
+    private final AppDatabase mDb;
+    private final Writer mWriter;
+    private final long mWindowMs;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private final Object mLock = new Object();
+    private Map<String, PendingUpdate> mPendingUpdates = new LinkedHashMap<>();
+    private boolean mFlushScheduled;
+
+    // statistics, guarded by mLock
+    private long mSubmittedCount;
+    private long mCoalescedCount;
+    private long mWrittenCount;
+    private long mTransactionCount;
+    private long mWriteTimeMs;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    VideoUpdateCoalescer(AppDatabase db, long windowMs, Writer writer) {
+        mDb = db;
+        mWindowMs = windowMs;
+        mWriter = writer;
+    }
+
+    /**
+     * Queues the update of one column of a video, it is written at the end of the current window.
+     */
+    void submit(long videoId, String column, String value) {
+        synchronized (mLock) {
+            mSubmittedCount++;
+            if (mPendingUpdates.put(videoId + "/" + column,
+                    new PendingUpdate(videoId, column, value)) != null) {
+                mCoalescedCount++;
+            }
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.schedule(mFlushRunnable, mWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        final List<PendingUpdate> updates;
+        synchronized (mLock) {
+            updates = new ArrayList<>(mPendingUpdates.values());
+            mPendingUpdates = new LinkedHashMap<>();
+            mFlushScheduled = false;
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (PendingUpdate update : updates) {
+                    mWriter.write(update.mVideoId, update.mColumn, update.mValue);
+                }
+            }
+        });
+        long elapsedMs = SystemClock.elapsedRealtime() - startTime;
+        mWriter.onFlushed();
+
+        synchronized (mLock) {
+            mWrittenCount += updates.size();
+            mTransactionCount++;
+            mWriteTimeMs += elapsedMs;
+        }
+        if (DEBUG) {
+            Log.d(TAG, "flushed " + updates.size() + " updates in " + elapsedMs + " ms, " + this);
+        }
+    }
+
+    /**
+     * Number of updates submitted so far.
+     */
+    long getSubmittedCount() {
+        synchronized (mLock) {
+            return mSubmittedCount;
+        }
+    }
+
+    /**
+     * Number of updates which were replaced by a later update before being written.
+     */
+    long getCoalescedCount() {
+        synchronized (mLock) {
+            return mCoalescedCount;
+        }
+    }
+
+    /**
+     * Number of updates written to the database.
+     */
+    long getWrittenCount() {
+        synchronized (mLock) {
+            return mWrittenCount;
+        }
+    }
+
+    /**
+     * Number of write transactions, i.e. of invalidations of the observers of the videos.
+     */
+    long getInvalidationCount() {
+        synchronized (mLock) {
+            return mTransactionCount;
+        }
+    }
+
+    /**
+     * Updates written per second of time spent in the write transactions.
+     */
+    float getWriteThroughput() {
+        synchronized (mLock) {
+            return mWriteTimeMs == 0 ? 0f : mWrittenCount * 1000f / mWriteTimeMs;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return "VideoUpdateCoalescer[submitted=" + mSubmittedCount + ", coalesced="
+                    + mCoalescedCount + ", written=" + mWrittenCount + ", invalidations="
+                    + mTransactionCount + ", writeTimeMs=" + mWriteTimeMs + "]";
+        }
+    }
+}
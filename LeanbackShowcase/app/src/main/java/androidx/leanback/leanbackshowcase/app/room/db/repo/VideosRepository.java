@@ -17,29 +17,39 @@
 
 package androidx.leanback.leanbackshowcase.app.room.db.repo;
 
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
-import androidx.room.Room;
-import android.os.AsyncTask;
-import androidx.annotation.WorkerThread;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import android.os.SystemClock;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
 import androidx.leanback.leanbackshowcase.app.room.api.VideoDownloadingService;
 import androidx.leanback.leanbackshowcase.app.room.api.VideosWithGoogleTag;
 import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
 import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.Bm25;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.network.StorageQuotaManager;
 import androidx.leanback.leanbackshowcase.utils.Utils;
 import android.util.Log;
 
 import com.google.gson.Gson;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -64,15 +74,67 @@ public class VideosRepository {
     private static final String BACKGROUND = "background";
     private static final String VIDEO = "video";
 
+    // maximum number of rows returned for a search query
+    private static final int SEARCH_RESULT_LIMIT = 100;
+    // BM25 weight of the name and category columns of the full text index
+    private static final double[] FTS_COLUMN_WEIGHTS = {4.0, 1.0};
+
+    // updates submitted within this window are written in the same transaction
+    private static final long UPDATE_WINDOW_MS = 100;
+
+    // number of category live data kept once nothing observes them any more
+    private static final int VIDEO_CACHE_SIZE = 32;
+
+    // paging of the category rows, only a few pages around the focused card are kept in memory
+    private static final PagedList.Config VIDEO_PAGE_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(20)
+            .setPrefetchDistance(20)
+            .setInitialLoadSizeHint(40)
+            .setMaxSize(120)
+            .setEnablePlaceholders(true)
+            .build();
+
     private static VideosRepository sVideosRepository;
 
+    // all catalog writes are serialized on this executor instead of the shared AsyncTask one
+    private static final Executor sIngestionExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Reports the progress of the catalog population. All callbacks are made on the ingestion
+     * thread, while the write transaction is still open for {@link #onProgress}.
+     */
+    public interface PopulationListener {
+
+        /**
+         * Called after the videos of one category have been written.
+         *
+         * @param categoriesDone  number of categories written so far
+         * @param totalCategories number of categories in the feed
+         * @param videosDone      number of videos written so far
+         */
+        void onProgress(int categoriesDone, int totalCategories, int videosDone);
+
+        /**
+         * Called once the transaction has been committed, so observers are invalidated once.
+         *
+         * @param videoCount number of videos written
+         * @param elapsedMs  time spent in the write transaction
+         */
+        void onPopulated(int videoCount, long elapsedMs);
+    }
+
     private AppDatabase mDb;
     private VideoDao mVideoDao;
     private CategoryDao mCategoryDao;
 
     // maintain the local cache so the live data can be shared among different components
-    private Map<String, LiveData<List<VideoEntity>>> mVideoEntitiesCache;
+    private LiveDataCache<String, LiveData<List<VideoEntity>>> mVideoEntitiesCache;
+    private LiveDataCache<String, LiveData<PagedList<VideoEntity>>> mPagedVideoEntitiesCache;
     private LiveData<List<CategoryEntity>> mCategories;
+    private volatile PopulationListener mPopulationListener;
+    private VideoUpdateCoalescer mUpdateCoalescer;
+    // set when a flush records a download, only touched on the thread of the coalescer
+    private boolean mQuotaCheckPending;
 
     public static VideosRepository getVideosRepositoryInstance() {
         if (sVideosRepository == null) {
@@ -90,15 +152,25 @@ public class VideosRepository {
     public LiveData<List<VideoEntity>> getVideosInSameCategoryLiveData(String category) {
 
         // always try to retrive from local cache firstly
-        if (mVideoEntitiesCache.containsKey(category)) {
-            return mVideoEntitiesCache.get(category);
+        LiveData<List<VideoEntity>> videoEntities = mVideoEntitiesCache.get(category);
+        if (DEBUG) {
+            Log.d(TAG, "getVideosInSameCategoryLiveData: " + mVideoEntitiesCache);
         }
-        LiveData<List<VideoEntity>> videoEntities = mVideoDao.loadVideoInSameCateogry(category);
-        mVideoEntitiesCache.put(category, videoEntities);
         return videoEntities;
     }
 
-    public LiveData<List<CategoryEntity>> getAllCategories() {
+    /**
+     * Same as {@link #getVideosInSameCategoryLiveData(String)}, but the videos are loaded page by
+     * page as the user scrolls through the category.
+     *
+     * @param category category
+     * @return The paged list of videos which is wrapped in a live data.
+     */
+    public LiveData<PagedList<VideoEntity>> getPagedVideosInSameCategoryLiveData(String category) {
+        return mPagedVideoEntitiesCache.get(category);
+    }
+
+    public synchronized LiveData<List<CategoryEntity>> getAllCategories() {
 
         if (mCategories == null) {
             mCategories = mCategoryDao.loadAllCategories();
@@ -106,62 +178,255 @@ public class VideosRepository {
         return mCategories;
     }
 
+    /**
+     * Searches the full text index for videos whose name or category contains words starting
+     * with the words of the query.
+     *
+     * @param query raw text typed by the user
+     * @return The search result, most relevant first, which is wrapped in a live data.
+     */
     public LiveData<List<VideoEntity>> getSearchResult(String query) {
-        return mVideoDao.searchVideos(query);
+        String match = buildMatchQuery(query);
+        if (match.isEmpty()) {
+            MutableLiveData<List<VideoEntity>> empty = new MutableLiveData<>();
+            empty.setValue(Collections.<VideoEntity>emptyList());
+            return empty;
+        }
+        return Transformations.switchMap(mVideoDao.matchVideos(match),
+                new Function<List<VideoDao.FtsMatch>, LiveData<List<VideoEntity>>>() {
+                    @Override
+                    public LiveData<List<VideoEntity>> apply(List<VideoDao.FtsMatch> matches) {
+                        return loadRankedVideos(rankMatches(matches, SEARCH_RESULT_LIMIT));
+                    }
+                });
+    }
+
+    /**
+     * Ids of the best matches by BM25, best first. Hits in the name weigh more than hits in the
+     * category.
+     */
+    private static List<Long> rankMatches(List<VideoDao.FtsMatch> matches, int limit) {
+        final Map<Long, Double> scores = new HashMap<>();
+        List<Long> ids = new ArrayList<>(matches.size());
+        for (VideoDao.FtsMatch match : matches) {
+            scores.put(match.id, Bm25.score(match.matchinfo, FTS_COLUMN_WEIGHTS));
+            ids.add(match.id);
+        }
+        Collections.sort(ids, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                int byScore = Double.compare(scores.get(b), scores.get(a));
+                return byScore != 0 ? byScore : Long.compare(a, b);
+            }
+        });
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    /**
+     * Loads the videos with the given ids, in the order of the ids.
+     */
+    private LiveData<List<VideoEntity>> loadRankedVideos(final List<Long> ids) {
+        if (ids.isEmpty()) {
+            MutableLiveData<List<VideoEntity>> empty = new MutableLiveData<>();
+            empty.setValue(Collections.<VideoEntity>emptyList());
+            return empty;
+        }
+        return Transformations.map(mVideoDao.loadVideosByIds(ids),
+                new Function<List<VideoEntity>, List<VideoEntity>>() {
+                    @Override
+                    public List<VideoEntity> apply(List<VideoEntity> videos) {
+                        Map<Long, VideoEntity> byId = new HashMap<>();
+                        for (VideoEntity video : videos) {
+                            byId.put(video.getId(), video);
+                        }
+                        List<VideoEntity> ranked = new ArrayList<>(videos.size());
+                        for (Long id : ids) {
+                            VideoEntity video = byId.get(id);
+                            if (video != null) {
+                                ranked.add(video);
+                            }
+                        }
+                        return ranked;
+                    }
+                });
+    }
+
+    /**
+     * Turns the query into a prefix query for each of its words, quoting each word so that FTS
+     * operators typed by the user are matched literally.
+     */
+    private static String buildMatchQuery(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String token : query.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(token).append("\"*");
+        }
+        return match.toString();
     }
 
     public LiveData<VideoEntity> getVideoById(Long id) {
         return mVideoDao.loadVideoById(id);
     }
 
+    public long getVideoCacheHitCount() {
+        return mVideoEntitiesCache.getHitCount();
+    }
+
+    public long getVideoCacheMissCount() {
+        return mVideoEntitiesCache.getMissCount();
+    }
+
+    public long getVideoCacheEvictionCount() {
+        return mVideoEntitiesCache.getEvictionCount();
+    }
+
+    public void setPopulationListener(PopulationListener listener) {
+        mPopulationListener = listener;
+    }
+
 
 
     /**
-     * Helper function to access the database and update the video information in the database.
+     * Helper function to update the video information in the database.
+     *
+     * The entity is updated right away, while only the changed column is written to the database
+     * by the write-behind coalescer: updates arriving within {@link #UPDATE_WINDOW_MS} are written
+     * in one transaction and invalidate the observers once.
      *
      * @param video    video entity
      * @param category which fields to update
      * @param value    updated value
      */
-    @WorkerThread
-    public synchronized void updateDatabase(VideoEntity video, String category, String value) {
-        try {
-            mDb.beginTransaction();
-            switch (category) {
-                case VIDEO:
-                    video.setVideoLocalStorageUrl(value);
-                    break;
-                case BACKGROUND:
-                    video.setVideoBgImageLocalStorageUrl(value);
-                    break;
-                case CARD:
-                    video.setVideoCardImageLocalStorageUrl(value);
-                    break;
-                case STATUS:
-                    video.setStatus(value);
-                    break;
-                case RENTED:
-                    video.setRented(true);
-                    break;
-            }
-            mDb.videoDao().updateVideo(video);
-            mDb.setTransactionSuccessful();
-        } finally {
-            mDb.endTransaction();
+    public void updateDatabase(VideoEntity video, String category, String value) {
+        switch (category) {
+            case VIDEO:
+                video.setVideoLocalStorageUrl(value);
+                break;
+            case BACKGROUND:
+                video.setVideoBgImageLocalStorageUrl(value);
+                break;
+            case CARD:
+                video.setVideoCardImageLocalStorageUrl(value);
+                break;
+            case STATUS:
+                video.setStatus(value);
+                break;
+            case RENTED:
+                video.setRented(true);
+                break;
+            default:
+                return;
+        }
+        mUpdateCoalescer.submit(video.getId(), category, value);
+    }
+
+    /**
+     * Writes a single column update, called by the coalescer inside its transaction.
+     */
+    private void writeColumn(long videoId, String category, String value) {
+        switch (category) {
+            case VIDEO:
+                mVideoDao.updateVideoLocalStorageUrl(videoId, value);
+                onLocalStorageUrlWritten(value);
+                break;
+            case BACKGROUND:
+                mVideoDao.updateVideoBgImageLocalStorageUrl(videoId, value);
+                onLocalStorageUrlWritten(value);
+                break;
+            case CARD:
+                mVideoDao.updateVideoCardImageLocalStorageUrl(videoId, value);
+                onLocalStorageUrlWritten(value);
+                break;
+            case STATUS:
+                mVideoDao.updateStatus(videoId, value);
+                break;
+            case RENTED:
+                mVideoDao.markRented(videoId);
+                break;
+        }
+    }
+
+    /**
+     * A downloaded resource has been recorded, the quota is checked once the flush commits.
+     */
+    private void onLocalStorageUrlWritten(String value) {
+        if (!value.isEmpty()) {
+            mQuotaCheckPending = true;
+        }
+    }
+
+    /**
+     * Makes sure the downloads still fit in the quota. Called after the flush transaction has
+     * committed, so that the storage manager, which reads the downloads on its own thread, sees
+     * the ones just recorded.
+     */
+    private void onUpdatesFlushed() {
+        if (mQuotaCheckPending) {
+            mQuotaCheckPending = false;
+            StorageQuotaManager.getInstance().enforceQuota();
         }
     }
 
+    public long getSubmittedUpdateCount() {
+        return mUpdateCoalescer.getSubmittedCount();
+    }
+
+    public long getWrittenUpdateCount() {
+        return mUpdateCoalescer.getWrittenCount();
+    }
+
+    public long getUpdateInvalidationCount() {
+        return mUpdateCoalescer.getInvalidationCount();
+    }
+
+    public float getUpdateThroughput() {
+        return mUpdateCoalescer.getWriteThroughput();
+    }
+
     @Inject
     public VideosRepository() {
         createAndPopulateDatabase();
         mVideoDao = mDb.videoDao();
         mCategoryDao = mDb.categoryDao();
-        mVideoEntitiesCache = new HashMap<>();
+        mUpdateCoalescer = new VideoUpdateCoalescer(mDb, UPDATE_WINDOW_MS,
+                new VideoUpdateCoalescer.Writer() {
+                    @Override
+                    public void write(long videoId, String column, String value) {
+                        writeColumn(videoId, column, value);
+                    }
+
+                    @Override
+                    public void onFlushed() {
+                        onUpdatesFlushed();
+                    }
+                });
+        mVideoEntitiesCache = new LiveDataCache<>(VIDEO_CACHE_SIZE,
+                new LiveDataCache.Loader<String, LiveData<List<VideoEntity>>>() {
+                    @Override
+                    public LiveData<List<VideoEntity>> load(String category) {
+                        return mVideoDao.loadVideoInSameCateogry(category);
+                    }
+                });
+        mPagedVideoEntitiesCache = new LiveDataCache<>(VIDEO_CACHE_SIZE,
+                new LiveDataCache.Loader<String, LiveData<PagedList<VideoEntity>>>() {
+                    @Override
+                    public LiveData<PagedList<VideoEntity>> load(String category) {
+                        return new LivePagedListBuilder<>(
+                                mVideoDao.loadPagedVideoInSameCategory(category),
+                                VIDEO_PAGE_CONFIG).build();
+                    }
+                });
     }
 
     private void createAndPopulateDatabase() {
-        mDb = Room.databaseBuilder(SampleApplication.getInstance(),
-                AppDatabase.class, AppDatabase.DATABASE_NAME).build();
+        // share the database with the background components so they invalidate the same
+        // observers
+        mDb = AppDatabase.getInstance(SampleApplication.getInstance());
 
         // insert contents into database
         try {
@@ -201,7 +466,7 @@ public class VideosRepository {
      *
      * @param db Room database.
      */
-    private static void buildDatabase(final AppDatabase db, String url) throws IOException {
+    private void buildDatabase(final AppDatabase db, String url) throws IOException {
         Retrofit retrofit = new Retrofit
                 .Builder()
                 .baseUrl(url)
@@ -229,33 +494,85 @@ public class VideosRepository {
 
     }
 
-    private static void populateDatabase(VideosWithGoogleTag videosWithGoogleTag, final AppDatabase db) {
-        for (final VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory :
-                videosWithGoogleTag.getAllResources()) {
-
-            // create category table
-            final CategoryEntity categoryEntity = new CategoryEntity();
-            categoryEntity.setCategoryName(videosGroupByCategory.getCategory());
-
-            // create video table with customization
-            postProcessing(videosGroupByCategory);
-
-            new AsyncTask<Void, Void, Void>() {
-                @Override
-                protected Void doInBackground(Void... voids) {
-                    try {
-                        db.beginTransaction();
-                        db.categoryDao().insertCategory(categoryEntity);
-                        db.videoDao().insertAllVideos(videosGroupByCategory.getVideos());
-                        db.setTransactionSuccessful();
-                    } finally {
-                        db.endTransaction();
+    /**
+     * Writes every category and video of the feed in a single transaction on the ingestion
+     * executor, so Room's invalidation tracker notifies the observers only once.
+     */
+    private void populateDatabase(final VideosWithGoogleTag videosWithGoogleTag,
+            final AppDatabase db) {
+        sIngestionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<VideosWithGoogleTag.VideosGroupByCategory> groups =
+                        videosWithGoogleTag.getAllResources();
+                final List<CategoryEntity> categories = new ArrayList<>(groups.size());
+                for (VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory : groups) {
+
+                    // create category table
+                    CategoryEntity categoryEntity = new CategoryEntity();
+                    categoryEntity.setCategoryName(videosGroupByCategory.getCategory());
+                    categories.add(categoryEntity);
+
+                    // create video table with customization
+                    postProcessing(videosGroupByCategory);
+                }
+
+                final int[] videoCount = new int[1];
+                long startTime = SystemClock.elapsedRealtime();
+                db.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        db.categoryDao().insertAllCategories(categories);
+                        Map<String, Long> videoIds = new HashMap<>();
+                        for (VideoDao.VideoKey key : db.videoDao().loadVideoKeys()) {
+                            videoIds.put(key.videoUrl, key.id);
+                        }
+                        for (int i = 0; i < groups.size(); i++) {
+                            List<VideoEntity> videos = groups.get(i).getVideos();
+                            upsertVideos(db.videoDao(), videos, videoIds);
+                            videoCount[0] += videos.size();
+                            PopulationListener listener = mPopulationListener;
+                            if (listener != null) {
+                                listener.onProgress(i + 1, groups.size(), videoCount[0]);
+                            }
+                        }
                     }
-                    return null;
+                });
+                long elapsedMs = SystemClock.elapsedRealtime() - startTime;
+
+                if (DEBUG) {
+                    Log.d(TAG, "Populated " + videoCount[0] + " videos in " + categories.size()
+                            + " categories in " + elapsedMs + " ms");
                 }
-            }.execute();
+                PopulationListener listener = mPopulationListener;
+                if (listener != null) {
+                    listener.onPopulated(videoCount[0], elapsedMs);
+                }
+            }
+        });
+    }
 
+    /**
+     * Inserts the videos of the feed that are new, and updates the ones already in the database
+     * in place. Replacing those would reset their version, and an observer could then take
+     * changed content for content it has already seen.
+     *
+     * @param videoIds Id of every video in the database keyed by its url
+     */
+    private static void upsertVideos(VideoDao dao, List<VideoEntity> videos,
+            Map<String, Long> videoIds) {
+        List<VideoEntity> newVideos = new ArrayList<>();
+        for (VideoEntity video : videos) {
+            Long id = videoIds.get(video.getVideoUrl());
+            if (id == null) {
+                newVideos.add(video);
+            } else {
+                dao.updateFeedColumns(id, video.getCategory(), video.getTitle(),
+                        video.getDescription(), video.getCardImageUrl(), video.getBgImageUrl(),
+                        video.getStudio(), video.getTrailerVideoUrl());
+            }
         }
+        dao.insertNewVideos(newVideos);
     }
 
     /**
@@ -68,6 +68,10 @@ public class ListenerModule {
             @Override
             public void onItemClicked(Presenter.ViewHolder itemViewHolder, Object item,
                     RowPresenter.ViewHolder rowViewHolder, Row row) {
+                // placeholder of a paged row whose video has not been loaded yet
+                if (item == null) {
+                    return;
+                }
                 Intent intent;
                 Long videoItemId = ((VideoEntity) item).getId();
                 intent = new Intent(currentActivity, LiveDataDetailActivity.class);
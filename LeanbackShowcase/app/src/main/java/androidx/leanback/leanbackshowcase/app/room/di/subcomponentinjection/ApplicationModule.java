@@ -18,7 +18,6 @@ package androidx.leanback.leanbackshowcase.app.room.di.subcomponentinjection;
 
 
 import android.app.Application;
-import androidx.room.Room;
 import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
@@ -33,7 +32,7 @@ public class ApplicationModule {
     @Singleton
     @Provides
     AppDatabase provideAppDatabase(Application app) {
-        return Room.databaseBuilder(app, AppDatabase.class, AppDatabase.DATABASE_NAME).build();
+        return AppDatabase.getInstance(app);
     }
 
     @Singleton
@@ -23,10 +23,6 @@ import androidx.lifecycle.LifecycleObserver;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-
-import java.util.ArrayList;
-import java.util.List;
 
 public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
         implements LifecycleObserver{
@@ -34,48 +30,27 @@ public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
     // singleton design pattern
     private static DownloadCompleteBroadcastReceiver sReceiver;
 
-    private List<DownloadCompleteListener> downloadingCompletionListener;
-
     public interface DownloadCompleteListener {
         void onDownloadingCompleted(DownloadingTaskDescription desc);
     }
 
+    /**
+     * Listeners are kept by the download scheduler, which also delivers the resources downloaded
+     * while no listener was registered.
+     */
     public void registerListener(DownloadCompleteListener listener) {
-        downloadingCompletionListener.add(listener);
+        DownloadScheduler.getInstance().registerListener(listener);
+    }
+
+    public void unregisterListener(DownloadCompleteListener listener) {
+        DownloadScheduler.getInstance().unregisterListener(listener);
     }
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        final DownloadManager dm = (DownloadManager) context.getSystemService(
-                Context.DOWNLOAD_SERVICE);
-        Long downloadingTaskId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1L);
-        if (NetworkManagerUtil.downloadingTaskQueue.containsKey(downloadingTaskId)) {
-            DownloadManager.Query query = new DownloadManager.Query();
-            query.setFilterById(downloadingTaskId);
-            Cursor cursor = dm.query(query);
-
-            // retrieve downloaded content's information through download manager.
-            if (!cursor.moveToFirst()) {
-                return;
-            }
-
-            if (cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_STATUS))
-                    != DownloadManager.STATUS_SUCCESSFUL) {
-                return;
-            }
-
-            String path = cursor.getString(
-                    cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI));
-
-            final DownloadingTaskDescription desc =
-                    NetworkManagerUtil.downloadingTaskQueue.get(downloadingTaskId);
-
-            // update local storage path
-            desc.setStoragePath(path);
-
-            for (final DownloadCompleteListener listener: downloadingCompletionListener) {
-                        listener.onDownloadingCompleted(desc);
-            }
+        long downloadingTaskId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1L);
+        if (downloadingTaskId != -1L) {
+            DownloadScheduler.getInstance().onDownloadComplete(downloadingTaskId);
         }
     }
 
@@ -87,6 +62,5 @@ public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
     }
 
     private DownloadCompleteBroadcastReceiver() {
-        downloadingCompletionListener = new ArrayList<>();
     }
 }
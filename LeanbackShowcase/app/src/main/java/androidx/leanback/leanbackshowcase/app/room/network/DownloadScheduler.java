@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import android.app.DownloadManager;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.DownloadTaskDao;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.DownloadTaskEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the downloads of the video resources through the download manager.
+ *
+ * The queue is persisted in the download task table so it survives the process: card images are
+ * downloaded before background images, which are downloaded before the videos, at most
+ * {@link #MAX_CONCURRENT_DOWNLOADS} at a time. Failed transfers are retried with an exponential
+ * backoff, and the tasks the process lost track of are reconciled with the download manager when
+ * the scheduler is created.
+ *
+ * All the bookkeeping runs on a single worker thread, listeners are notified on the main thread.
+ */
+public class DownloadScheduler {
+
+    // For debugging purpose.
+    private static final boolean DEBUG = false;
+    private static final String TAG = "DownloadScheduler";
+
+    // resource category
+    private static final String VIDEO = "video";
+    private static final String BACKGROUND = "background";
+    private static final String CARD = "card";
+
+    // working status of a video while its resources are queued
+    private static final String DOWNLOADING = "downloading";
+
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static DownloadScheduler sScheduler;
+
+    private final DownloadTaskDao mTaskDao;
+    private final AppDatabase mDb;
+    private final DownloadManager mDownloadManager;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<DownloadCompleteBroadcastReceiver.DownloadCompleteListener> mListeners =
+            new CopyOnWriteArrayList<>();
+
+    // the next retry, only touched on the worker thread
+    private ScheduledFuture<?> mScheduledPump;
+
+    // statistics, only written on the worker thread
+    private volatile long mCompletedCount;
+    private volatile long mFailedCount;
+    private volatile long mRetryCount;
+    private volatile long mDownloadedBytes;
+    private volatile long mTransferTimeMs;
+    private volatile int mQueueDepth;
+    private volatile int mMaxQueueDepth;
+
+    private final Runnable mPumpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pump();
+        }
+    };
+
+    public static synchronized DownloadScheduler getInstance() {
+        if (sScheduler == null) {
+            sScheduler = new DownloadScheduler(SampleApplication.getInstance());
+        }
+        return sScheduler;
+    }
+
+    private DownloadScheduler(Context context) {
+        mDb = AppDatabase.getInstance(context);
+        mTaskDao = mDb.downloadTaskDao();
+        mDownloadManager = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                reconcile();
+            }
+        });
+    }
+
+    /**
+     * Registers a listener notified on the main thread when a resource is downloaded. Resources
+     * downloaded while no listener was registered are delivered to it right away.
+     */
+    public void registerListener(DownloadCompleteBroadcastReceiver.DownloadCompleteListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliverCompletedTasks();
+            }
+        });
+    }
+
+    public void unregisterListener(
+            DownloadCompleteBroadcastReceiver.DownloadCompleteListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Queues the download of the card image, background image and video of the given video.
+     */
+    public void enqueue(final VideoEntity video) {
+        final long videoId = video.getId();
+        final String[] urls = {video.getCardImageUrl(), video.getBgImageUrl(), video.getVideoUrl()};
+        final String[] categories = {CARD, BACKGROUND, VIDEO};
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                List<DownloadTaskEntity> tasks = new ArrayList<>();
+                for (int i = 0; i < urls.length; i++) {
+                    if (urls[i] == null || mTaskDao.countActiveTasks(videoId, categories[i]) > 0) {
+                        continue;
+                    }
+                    DownloadTaskEntity task = new DownloadTaskEntity();
+                    task.setVideoId(videoId);
+                    task.setCategory(categories[i]);
+                    task.setUrl(urls[i]);
+                    // the array is ordered by priority
+                    task.setPriority(i);
+                    task.setState(DownloadTaskEntity.STATE_PENDING);
+                    task.setNextAttemptAt(now);
+                    task.setCreatedAt(now);
+                    tasks.add(task);
+                }
+                mTaskDao.insertTasks(tasks);
+                pump();
+            }
+        });
+    }
+
+    /**
+     * Called when the download manager reports the end of a transfer.
+     */
+    void onDownloadComplete(final long downloadId) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                DownloadTaskEntity task = mTaskDao.loadTaskByDownloadId(downloadId);
+                if (task == null || task.getState() != DownloadTaskEntity.STATE_RUNNING) {
+                    return;
+                }
+                checkTransfer(task);
+                deliverCompletedTasks();
+                pump();
+            }
+        });
+    }
+
+    /**
+     * Starts as many runnable tasks as there are free transfer slots and schedules the next retry.
+     */
+    private void pump() {
+        int running = mTaskDao.countTasksInState(DownloadTaskEntity.STATE_RUNNING);
+        int freeSlots = MAX_CONCURRENT_DOWNLOADS - running;
+        long now = System.currentTimeMillis();
+        if (freeSlots > 0) {
+            for (DownloadTaskEntity task : mTaskDao.loadRunnableTasks(now, freeSlots)) {
+                start(task, now);
+            }
+        }
+
+        int pending = mTaskDao.countTasksInState(DownloadTaskEntity.STATE_PENDING);
+        mQueueDepth = pending + mTaskDao.countTasksInState(DownloadTaskEntity.STATE_RUNNING);
+        mMaxQueueDepth = Math.max(mMaxQueueDepth, mQueueDepth);
+
+        // wake up for the next retry, a completion will pump the queue anyway
+        if (mScheduledPump != null) {
+            mScheduledPump.cancel(false);
+            mScheduledPump = null;
+        }
+        Long nextAttemptAt = mTaskDao.loadNextAttemptTime();
+        if (nextAttemptAt != null && nextAttemptAt > now) {
+            mScheduledPump = mExecutor.schedule(mPumpRunnable, nextAttemptAt - now,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (DEBUG) {
+            Log.d(TAG, "pump: " + running + " running, " + pending + " pending, " + this);
+        }
+    }
+
+    private void start(DownloadTaskEntity task, long now) {
+        long downloadId = NetworkManagerUtil.downloadFromNetworkHelper(task.getVideoId(),
+                task.getUrl(), task.getCategory());
+        if (downloadId == 0L) {
+            // unsupported resource, retrying will not help
+            drop(task);
+            return;
+        }
+        task.setState(DownloadTaskEntity.STATE_RUNNING);
+        task.setDownloadId(downloadId);
+        task.setAttempts(task.getAttempts() + 1);
+        task.setStartedAt(now);
+        mTaskDao.updateTask(task);
+    }
+
+    /**
+     * Queries the download manager for the transfer of a running task and completes, retries or
+     * keeps waiting for it accordingly.
+     */
+    private void checkTransfer(DownloadTaskEntity task) {
+        DownloadManager.Query query = new DownloadManager.Query();
+        query.setFilterById(task.getDownloadId());
+        Cursor cursor = mDownloadManager.query(query);
+        try {
+            if (cursor == null || !cursor.moveToFirst()) {
+                // the download manager forgot about it
+                retry(task);
+                return;
+            }
+            int status = cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_STATUS));
+            if (status == DownloadManager.STATUS_SUCCESSFUL) {
+                mDownloadedBytes += cursor.getLong(
+                        cursor.getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES));
+                mTransferTimeMs += System.currentTimeMillis() - task.getStartedAt();
+                mCompletedCount++;
+                // a fresh download counts as a use, it should not be the first one evicted
+                StorageQuotaManager.getInstance().onVideoWatched(task.getVideoId());
+                task.setState(DownloadTaskEntity.STATE_COMPLETED);
+                task.setLocalUri(cursor.getString(
+                        cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI)));
+                mTaskDao.updateTask(task);
+            } else if (status == DownloadManager.STATUS_FAILED) {
+                mDownloadManager.remove(task.getDownloadId());
+                retry(task);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void retry(DownloadTaskEntity task) {
+        if (task.getAttempts() >= MAX_ATTEMPTS) {
+            if (DEBUG) {
+                Log.d(TAG, "giving up " + task);
+            }
+            drop(task);
+            return;
+        }
+        long backoffMs = Math.min(MAX_BACKOFF_MS,
+                INITIAL_BACKOFF_MS << Math.max(0, task.getAttempts() - 1));
+        mRetryCount++;
+        task.setState(DownloadTaskEntity.STATE_PENDING);
+        task.setDownloadId(0L);
+        task.setNextAttemptAt(System.currentTimeMillis() + backoffMs);
+        mTaskDao.updateTask(task);
+    }
+
+    /**
+     * Gives up on a task. Once nothing else is queued for the video, it is no longer shown as
+     * downloading, so that the user can start the download again.
+     */
+    private void drop(DownloadTaskEntity task) {
+        mFailedCount++;
+        mTaskDao.deleteTask(task);
+        long videoId = task.getVideoId();
+        if (mTaskDao.countActiveTasksOfVideo(videoId) == 0) {
+            VideoEntity video = mDb.videoDao().loadVideoByIdSync(videoId);
+            if (video != null && DOWNLOADING.equals(video.getStatus())) {
+                mDb.videoDao().updateStatus(videoId, "");
+            }
+        }
+    }
+
+    /**
+     * Hands the completed tasks to the listeners, they stay in the table until there is one.
+     */
+    private void deliverCompletedTasks() {
+        if (mListeners.isEmpty()) {
+            return;
+        }
+        for (DownloadTaskEntity task :
+                mTaskDao.loadTasksInState(DownloadTaskEntity.STATE_COMPLETED)) {
+            VideoEntity video = mDb.videoDao().loadVideoByIdSync(task.getVideoId());
+            mTaskDao.deleteTask(task);
+            if (video == null) {
+                continue;
+            }
+            final DownloadingTaskDescription desc =
+                    new DownloadingTaskDescription(video, task.getCategory());
+            desc.setStoragePath(task.getLocalUri());
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (DownloadCompleteBroadcastReceiver.DownloadCompleteListener listener :
+                            mListeners) {
+                        listener.onDownloadingCompleted(desc);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Brings the tasks which were running when the process died in line with the download manager.
+     */
+    private void reconcile() {
+        for (DownloadTaskEntity task :
+                mTaskDao.loadTasksInState(DownloadTaskEntity.STATE_RUNNING)) {
+            checkTransfer(task);
+        }
+        deliverCompletedTasks();
+        pump();
+    }
+
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    public long getFailedCount() {
+        return mFailedCount;
+    }
+
+    public long getRetryCount() {
+        return mRetryCount;
+    }
+
+    /**
+     * Number of pending and running tasks when the queue was last scheduled.
+     */
+    public int getQueueDepth() {
+        return mQueueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    /**
+     * Average throughput of the completed transfers, in bytes per second.
+     */
+    public long getThroughput() {
+        long transferTimeMs = mTransferTimeMs;
+        return transferTimeMs == 0 ? 0 : mDownloadedBytes * 1000 / transferTimeMs;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadScheduler[completed=" + mCompletedCount + ", failed=" + mFailedCount
+                + ", retries=" + mRetryCount + ", queueDepth=" + mQueueDepth
+                + ", maxQueueDepth=" + mMaxQueueDepth + ", throughput=" + getThroughput()
+                + " B/s]";
+    }
+}
@@ -26,8 +26,6 @@ import android.util.Log;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The utility class to simpify the network operation.
@@ -52,25 +50,12 @@ public class NetworkManagerUtil {
     private static final String DOWNLOAD_CARD_IMAGE = "Download card image";
     private static final String DOWNLOADING_CARD_IMAGE_FILE = "Downloading card image file";
     public static final String SUFFIX_SEPARATOR = ".";
-    // A queue which maintain all downloading task
-    final static Map<Long, DownloadingTaskDescription> downloadingTaskQueue = new HashMap<>();
 
+    /**
+     * Queues the download of all the resources related to the video, see {@link DownloadScheduler}.
+     */
     public static void download(VideoEntity mSelectedVideo) {
-        String videoUrl = mSelectedVideo.getVideoUrl();
-        String bgUrl = mSelectedVideo.getBgImageUrl();
-        String cardUrl = mSelectedVideo.getCardImageUrl();
-
-        String[] downloadUrls = new String[]{videoUrl, bgUrl, cardUrl};
-        String[] categories = new String[]{VIDEO, BACKGROUND, CARD};
-
-        // download all related resources
-        for (int i = 0; i < downloadUrls.length; i++) {
-            Long downloadManagerGeneratedTaskId = downloadFromNetworkHelper(mSelectedVideo.getId(),
-                    downloadUrls[i], categories[i]);
-            downloadingTaskQueue.put(downloadManagerGeneratedTaskId, new DownloadingTaskDescription(
-                    mSelectedVideo, categories[i]
-            ));
-        }
+        DownloadScheduler.getInstance().enqueue(mSelectedVideo);
     }
 
     /**
@@ -82,8 +67,8 @@ public class NetworkManagerUtil {
      * @param category       The resource category.
      * @return Download manager generated id. (Return 0 when error occurs)
      */
-    private static long downloadFromNetworkHelper(long videoId, String downloadingUrl,
-                                                  String category) {
+    static long downloadFromNetworkHelper(long videoId, String downloadingUrl,
+                                          String category) {
 
         // Currently we only support downloading for the following format.
         String[] allowedTypes = {"png", "jpg", "jpeg", "gif", "webp", "mp4"};
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import android.net.Uri;
+import android.util.Log;
+import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
+import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the downloaded resources within {@link AppConfiguration#DOWNLOAD_QUOTA_BYTES}.
+ *
+ * The size of the downloaded resources is recorded per video. When the total goes over the quota
+ * the resources of the least recently watched videos are evicted, the video files first since
+ * they are by far the largest, then the images. The local storage paths of the evicted resources
+ * are cleared in a single transaction before the files are deleted.
+ */
+public class StorageQuotaManager {
+
+    // For debugging purpose.
+    private static final boolean DEBUG = false;
+    private static final String TAG = "StorageQuotaManager";
+
+    private static StorageQuotaManager sManager;
+
+    private final AppDatabase mDb;
+    private final VideoDao mVideoDao;
+    private final Executor mExecutor = Executors.newSingleThreadExecutor();
+
+    // statistics, only written on the worker thread
+    private volatile long mUsedBytes;
+    private volatile long mEvictedBytes;
+    private volatile int mEvictedFileCount;
+
+    /**
+     * A downloaded resource of a video.
+     */
+    private static final class Resource {
+        final VideoEntity mVideo;
+        final File mFile;
+        final boolean mIsVideo;
+        final boolean mIsCard;
+
+        Resource(VideoEntity video, File file, boolean isVideo, boolean isCard) {
+            mVideo = video;
+            mFile = file;
+            mIsVideo = isVideo;
+            mIsCard = isCard;
+        }
+    }
+
+    public static synchronized StorageQuotaManager getInstance() {
+        if (sManager == null) {
+            sManager = new StorageQuotaManager(AppDatabase.getInstance(
+                    SampleApplication.getInstance()));
+        }
+        return sManager;
+    }
+
+    private StorageQuotaManager(AppDatabase db) {
+        mDb = db;
+        mVideoDao = db.videoDao();
+    }
+
+    /**
+     * Records that the video has been watched, so its resources are evicted last.
+     */
+    public void onVideoWatched(final long videoId) {
+        final long now = System.currentTimeMillis();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mVideoDao.updateLastWatchedAt(videoId, now);
+            }
+        });
+    }
+
+    /**
+     * Recomputes the size of the downloaded resources and evicts the least recently watched ones
+     * until the total fits in the quota.
+     */
+    public void enforceQuota() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                evictOverQuota(AppConfiguration.DOWNLOAD_QUOTA_BYTES);
+            }
+        });
+    }
+
+    private void evictOverQuota(long quotaBytes) {
+        // least recently watched first
+        List<VideoEntity> videos = mVideoDao.loadDownloadedVideos();
+
+        final Map<Long, Long> bytesPerVideo = new HashMap<>();
+        List<Resource> videoFiles = new ArrayList<>();
+        List<Resource> imageFiles = new ArrayList<>();
+        long usedBytes = 0;
+        for (VideoEntity video : videos) {
+            long videoBytes = 0;
+            Resource resource = toResource(video, video.getVideoLocalStorageUrl(), true, false);
+            if (resource != null) {
+                videoFiles.add(resource);
+                videoBytes += resource.mFile.length();
+            }
+            resource = toResource(video, video.getVideoBgImageLocalStorageUrl(), false, false);
+            if (resource != null) {
+                imageFiles.add(resource);
+                videoBytes += resource.mFile.length();
+            }
+            resource = toResource(video, video.getVideoCardImageLocalStorageUrl(), false, true);
+            if (resource != null) {
+                imageFiles.add(resource);
+                videoBytes += resource.mFile.length();
+            }
+            bytesPerVideo.put(video.getId(), videoBytes);
+            usedBytes += videoBytes;
+        }
+
+        // videos are preferred over art, within each kind the least recently watched go first
+        final List<Resource> evicted = new ArrayList<>();
+        List<Resource> candidates = new ArrayList<>(videoFiles);
+        candidates.addAll(imageFiles);
+        for (Resource resource : candidates) {
+            if (usedBytes <= quotaBytes) {
+                break;
+            }
+            long length = resource.mFile.length();
+            usedBytes -= length;
+            mEvictedBytes += length;
+            long videoId = resource.mVideo.getId();
+            bytesPerVideo.put(videoId, bytesPerVideo.get(videoId) - length);
+            evicted.add(resource);
+        }
+        mUsedBytes = usedBytes;
+
+        // only the byte counts that differ from the stored ones are written
+        final Map<Long, Long> changedBytes = new HashMap<>();
+        for (VideoEntity video : videos) {
+            long videoBytes = bytesPerVideo.get(video.getId());
+            if (videoBytes != video.getDownloadedBytes()) {
+                changedBytes.put(video.getId(), videoBytes);
+            }
+        }
+        if (evicted.isEmpty() && changedBytes.isEmpty()) {
+            return;
+        }
+
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (Resource resource : evicted) {
+                    long videoId = resource.mVideo.getId();
+                    if (resource.mIsVideo) {
+                        mVideoDao.updateVideoLocalStorageUrl(videoId, "");
+                    } else if (resource.mIsCard) {
+                        mVideoDao.updateVideoCardImageLocalStorageUrl(videoId, "");
+                    } else {
+                        mVideoDao.updateVideoBgImageLocalStorageUrl(videoId, "");
+                    }
+                }
+                for (Map.Entry<Long, Long> entry : changedBytes.entrySet()) {
+                    mVideoDao.updateDownloadedBytes(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+
+        // the paths are cleared, no one will load the files any more
+        for (Resource resource : evicted) {
+            if (resource.mFile.delete()) {
+                mEvictedFileCount++;
+            }
+        }
+        if (DEBUG) {
+            Log.d(TAG, "evicted " + evicted.size() + " resources, " + this);
+        }
+    }
+
+    private static Resource toResource(VideoEntity video, String localUri, boolean isVideo,
+            boolean isCard) {
+        if (localUri == null || localUri.isEmpty()) {
+            return null;
+        }
+        String path = Uri.parse(localUri).getPath();
+        if (path == null) {
+            return null;
+        }
+        File file = new File(path);
+        return file.exists() ? new Resource(video, file, isVideo, isCard) : null;
+    }
+
+    /**
+     * Size of the downloaded resources after the last enforcement.
+     */
+    public long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    public int getEvictedFileCount() {
+        return mEvictedFileCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageQuotaManager[used=" + mUsedBytes + ", quota="
+                + AppConfiguration.DOWNLOAD_QUOTA_BYTES + ", evictedBytes=" + mEvictedBytes
+                + ", evictedFiles=" + mEvictedFileCount + "]";
+    }
+}
@@ -24,6 +24,7 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.lifecycle.ViewModelProviders;
 import androidx.annotation.Nullable;
 import androidx.leanback.leanbackshowcase.app.room.adapter.ListAdapter;
+import androidx.leanback.leanbackshowcase.app.room.adapter.PagedListObjectAdapter;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 import androidx.leanback.leanbackshowcase.app.room.viewmodel.VideosInSameCategoryViewModel;
 import androidx.leanback.widget.HorizontalGridView;
@@ -31,6 +32,7 @@ import androidx.leanback.widget.ListRow;
 import androidx.leanback.widget.ListRowPresenter;
 import androidx.leanback.widget.RowPresenter;
 import androidx.fragment.app.FragmentActivity;
+import androidx.paging.PagedList;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -95,8 +97,6 @@ public class LiveDataRowPresenter extends ListRowPresenter {
 
         String category = mRow.getHeaderItem().getName();
 
-        final ListAdapter<VideoEntity> adapter = (ListAdapter<VideoEntity>) mRow.getAdapter();
-
         FragmentActivity attachedFragmentActivity = (FragmentActivity) holder.view.getContext();
 
         // In our case, attached activity should be a lifecycle owner
@@ -109,11 +109,20 @@ public class LiveDataRowPresenter extends ListRowPresenter {
         VideosInSameCategoryViewModel viewModel = ViewModelProviders.of(attachedFragmentActivity, viewModelFactory).get(VideosInSameCategoryViewModel.class);
 
 
+        if (mRow.getAdapter() instanceof PagedListObjectAdapter) {
+            bindPagedList(vh, viewModel, category,
+                    (PagedListObjectAdapter<VideoEntity>) mRow.getAdapter());
+            return;
+        }
+
+        final ListAdapter<VideoEntity> adapter = (ListAdapter<VideoEntity>) mRow.getAdapter();
+
         // bind live data to view holder
-        vh.setLiveData(viewModel.getVideosInSameCategory(category));
+        LiveData<List<VideoEntity>> liveData = viewModel.getVideosInSameCategory(category);
+        vh.setLiveData(liveData);
 
         // observe the live data when this row is bound to view holder
-        vh.getLiveData().observe(mLifecycleOwner,
+        liveData.observe(mLifecycleOwner,
                 new Observer<List<VideoEntity>>() {
                     @Override
                     public void onChanged(
@@ -124,7 +133,7 @@ public class LiveDataRowPresenter extends ListRowPresenter {
                             // transition event
                             notifyDataLoaded();
 
-                            adapter.setItems(videoEntities,
+                            adapter.setItemsAsync(videoEntities,
                                     new Comparator<VideoEntity>() {
                                         @Override
                                         public int compare(VideoEntity o1,
@@ -135,14 +144,42 @@ public class LiveDataRowPresenter extends ListRowPresenter {
                                         @Override
                                         public int compare(VideoEntity o1,
                                                            VideoEntity o2) {
-                                            return o1.equals(o2) ? 0 : -1;
+                                            return o1.isSameContent(o2) ? 0 : -1;
                                         }
-                                    });
+                                    }, new ListAdapter.ChangePayloadProvider<VideoEntity>() {
+                                        @Override
+                                        public Object getChangePayload(VideoEntity oldItem,
+                                                                       VideoEntity newItem) {
+                                            return VideoCardPresenter.getChangePayload(oldItem,
+                                                    newItem);
+                                        }
+                                    }, null);
                         }
                     }
                 });
     }
 
+    /**
+     * Only the pages around the bound cards are loaded, the paged list diff is computed off the
+     * main thread by the adapter.
+     */
+    private void bindPagedList(LiveDataRowPresenterViewHolder vh,
+            VideosInSameCategoryViewModel viewModel, String category,
+            final PagedListObjectAdapter<VideoEntity> adapter) {
+        LiveData<PagedList<VideoEntity>> liveData =
+                viewModel.getPagedVideosInSameCategory(category);
+        vh.setLiveData(liveData);
+        liveData.observe(mLifecycleOwner, new Observer<PagedList<VideoEntity>>() {
+            @Override
+            public void onChanged(@Nullable PagedList<VideoEntity> videoEntities) {
+                if (videoEntities != null) {
+                    notifyDataLoaded();
+                    adapter.submitList(videoEntities);
+                }
+            }
+        });
+    }
+
     @Override
     protected void onUnbindRowViewHolder(RowPresenter.ViewHolder holder) {
         super.onUnbindRowViewHolder(holder);
@@ -155,18 +192,18 @@ public class LiveDataRowPresenter extends ListRowPresenter {
      */
     private class LiveDataRowPresenterViewHolder extends ListRowPresenter.ViewHolder {
 
-        private LiveData<List<VideoEntity>> mLiveData;
+        private LiveData<?> mLiveData;
 
         public LiveDataRowPresenterViewHolder(View rootView, HorizontalGridView gridView, ListRowPresenter p) {
             super(rootView, gridView, p);
         }
 
 
-        public void setLiveData(LiveData<List<VideoEntity>> liveData) {
+        public void setLiveData(LiveData<?> liveData) {
             mLiveData = liveData;
         }
 
-        public final LiveData<List<VideoEntity>> getLiveData() {
+        public final LiveData<?> getLiveData() {
             return mLiveData;
         }
     }
@@ -23,6 +23,7 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
+import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
@@ -47,6 +48,7 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 
 import java.io.File;
+import java.util.List;
 import javax.inject.Inject;
 
 /**
@@ -73,6 +75,12 @@ public class VideoCardPresenter extends Presenter {
     private static final String DOWNLOAD_VIDEO_NO_PERMISSION = "Download Video (No Permission)";
     private static final String DOWNLOAD_VIDEO_NO_NETWORK = "Download Video (No Network)";
 
+    /**
+     * Change payload of a video whose card image did not change, only the text of the card and its
+     * popup menu are updated.
+     */
+    public static final Object PAYLOAD_TEXT = new Object();
+
     // The default resource when the network or local content are not available.
     private static int sSelectedBackgroundColor = -1;
     private static int sDefaultBackgroundColor = -1;
@@ -112,6 +120,35 @@ public class VideoCardPresenter extends Presenter {
         cardViewHolder.bind(video);
     }
 
+    @Override
+    public void onBindViewHolder(ViewHolder viewHolder, Object item, List<Object> payloads) {
+        if (item == null || payloads.isEmpty()) {
+            onBindViewHolder(viewHolder, item);
+            return;
+        }
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_TEXT) {
+                onBindViewHolder(viewHolder, item);
+                return;
+            }
+        }
+        ((CardViewHolder) viewHolder).bindText((VideoEntity) item);
+    }
+
+    /**
+     * Returns the payload of a change between two versions of the same video: {@link #PAYLOAD_TEXT}
+     * when its card image is unchanged, e.g. when only its download status flipped, or null when
+     * the card has to be rebound entirely.
+     */
+    public static Object getChangePayload(VideoEntity oldItem, VideoEntity newItem) {
+        if (TextUtils.equals(oldItem.getCardImageUrl(), newItem.getCardImageUrl())
+                && TextUtils.equals(oldItem.getVideoCardImageLocalStorageUrl(),
+                newItem.getVideoCardImageLocalStorageUrl())) {
+            return PAYLOAD_TEXT;
+        }
+        return null;
+    }
+
     @Override
     public void onUnbindViewHolder(ViewHolder viewHolder) {
         ImageCardView cardView = (ImageCardView) viewHolder.view;
@@ -184,6 +221,9 @@ public class VideoCardPresenter extends Presenter {
 
         @Override
         public boolean onLongClick(View v) {
+            if (mVideo == null) {
+                return false;
+            }
             mPopupMenu.show();
             return true;
         }
@@ -232,19 +272,15 @@ public class VideoCardPresenter extends Presenter {
             }
             mVideo = video;
 
-            if (!video.isRented()) {
-                mCardView.setTitleText(video.getTitle());
-            } else {
-                mCardView.setTitleText(video.getTitle() + RENTED);
+            // paged rows bind a placeholder until the page holding the video is loaded
+            if (video == null) {
+                mCardView.setTitleText(null);
+                mCardView.setContentText(null);
+                mCardView.setMainImage(mDefaultBackground);
+                return;
             }
 
-            if (isRemovable()) {
-                mCardView.setContentText(video.getStudio() + DOWNLOADED);
-            } else if (!video.getStatus().isEmpty() && !isDownloadable()) {
-                mCardView.setContentText(video.getStudio() + " (" + video.getStatus() + ")");
-            } else {
-                mCardView.setContentText(video.getStudio());
-            }
+            bindText(video);
 
             String loadedUri;
             if (!video.getVideoCardImageLocalStorageUrl().isEmpty()) {
@@ -258,6 +294,27 @@ public class VideoCardPresenter extends Presenter {
                         .apply(mDefaultPlaceHolder)
                         .into(mCardView.getMainImageView());
             }
+        }
+
+        /**
+         * Updates the title, content text and popup menu of the card, leaving its image alone.
+         */
+        private void bindText(VideoEntity video) {
+            mVideo = video;
+
+            if (!video.isRented()) {
+                mCardView.setTitleText(video.getTitle());
+            } else {
+                mCardView.setTitleText(video.getTitle() + RENTED);
+            }
+
+            if (isRemovable()) {
+                mCardView.setContentText(video.getStudio() + DOWNLOADED);
+            } else if (!video.getStatus().isEmpty() && !isDownloadable()) {
+                mCardView.setContentText(video.getStudio() + " (" + video.getStatus() + ")");
+            } else {
+                mCardView.setContentText(video.getStudio());
+            }
 
             updatePopMenu(video);
         }
@@ -20,6 +20,7 @@ import android.app.Application;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
 import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 
@@ -53,4 +54,13 @@ public class VideosInSameCategoryViewModel extends AndroidViewModel {
         // explicitly
         return mRepository.getVideosInSameCategoryLiveData(category);
     }
+
+    /**
+     * Return the video entity paged list in same category using live data
+     *
+     * @return live data
+     */
+    public LiveData<PagedList<VideoEntity>> getPagedVideosInSameCategory(String category) {
+        return mRepository.getPagedVideosInSameCategoryLiveData(category);
+    }
 }
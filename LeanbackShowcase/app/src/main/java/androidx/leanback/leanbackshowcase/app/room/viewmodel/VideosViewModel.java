@@ -17,6 +17,9 @@
 package androidx.leanback.leanbackshowcase.app.room.viewmodel;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
 import androidx.arch.core.util.Function;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
@@ -30,6 +33,9 @@ import java.util.List;
 import javax.inject.Inject;
 
 public class VideosViewModel extends AndroidViewModel {
+    // how long the query has to stay unchanged before it hits the database
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
     // live data connect to database
     private final LiveData<List<CategoryEntity>> mAllCategories;
     private final LiveData<List<VideoEntity>> mSearchResults;
@@ -43,6 +49,19 @@ public class VideosViewModel extends AndroidViewModel {
 
     private final VideosRepository mRepository;
 
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private String mPendingQuery;
+    private final Runnable mApplyQueryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // the search result only follows the latest query, switchMap detaches the live data
+            // of the previous one so its late results are dropped
+            if (!TextUtils.equals(mPendingQuery, mQuery.getValue())) {
+                mQuery.setValue(mPendingQuery);
+            }
+        }
+    };
+
     @Inject
     public VideosViewModel(Application application, VideosRepository repository) {
         super(application);
@@ -96,8 +115,23 @@ public class VideosViewModel extends AndroidViewModel {
         return mAllCategories;
     }
 
+    /**
+     * Updates the search query. The query is only applied once it has not changed for
+     * {@link #SEARCH_DEBOUNCE_MS}, so typing does not run a search for every keystroke.
+     */
     public void setQueryMessage(String queryMessage) {
-        mQuery.setValue(queryMessage);
+        mPendingQuery = queryMessage == null ? "" : queryMessage;
+        mHandler.removeCallbacks(mApplyQueryRunnable);
+        mHandler.postDelayed(mApplyQueryRunnable, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Applies the search query right away, used when the user submits the query.
+     */
+    public void submitQueryMessage(String queryMessage) {
+        mPendingQuery = queryMessage == null ? "" : queryMessage;
+        mHandler.removeCallbacks(mApplyQueryRunnable);
+        mApplyQueryRunnable.run();
     }
 
     public void setVideoId(Long videoIdVal) {
@@ -111,4 +145,10 @@ public class VideosViewModel extends AndroidViewModel {
     public void updateDatabase(VideoEntity video, String category, String value) {
         mRepository.updateDatabase(video, category, value);
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mHandler.removeCallbacks(mApplyQueryRunnable);
+    }
 }
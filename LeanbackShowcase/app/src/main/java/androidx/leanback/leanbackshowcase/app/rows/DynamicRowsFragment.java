@@ -17,6 +17,7 @@
 package androidx.leanback.leanbackshowcase.app.rows;
 
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
@@ -28,6 +29,7 @@ import androidx.leanback.leanbackshowcase.app.media.VideoExampleActivity;
 import androidx.leanback.leanbackshowcase.cards.presenters.IconCardInChannelPublishPresenter;
 import androidx.leanback.leanbackshowcase.models.Card;
 import androidx.leanback.leanbackshowcase.models.CardRow;
+import androidx.leanback.leanbackshowcase.utils.BackgroundPrefetcher;
 import androidx.leanback.leanbackshowcase.utils.CardListRow;
 import androidx.leanback.leanbackshowcase.utils.Utils;
 import androidx.leanback.widget.ArrayObjectAdapter;
@@ -40,6 +42,7 @@ import androidx.leanback.widget.Presenter;
 import androidx.leanback.widget.Row;
 import androidx.leanback.widget.RowPresenter;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
@@ -66,6 +69,7 @@ public class DynamicRowsFragment extends BrowseFragment {
     private DisplayMetrics mMetrics;
     private URI mBackgroundURI;
     private BackgroundManager mBackgroundManager;
+    private BackgroundPrefetcher mBackgroundPrefetcher;
     private Runnable mBackgroudUpdateRunnable;
     /**
      * All channel contents related to this app.
@@ -122,6 +126,13 @@ public class DynamicRowsFragment extends BrowseFragment {
     public void onDestroy() {
         super.onDestroy();
         mHandler.removeCallbacks(mBackgroudUpdateRunnable);
+        if (mBackgroundPrefetcher != null) {
+            if (DEBUG) {
+                Log.d(TAG, "Background prefetch hits: " + mBackgroundPrefetcher.getHitCount()
+                        + ", misses: " + mBackgroundPrefetcher.getMissCount());
+            }
+            mBackgroundPrefetcher.clear();
+        }
     }
 
     /**
@@ -196,8 +207,26 @@ public class DynamicRowsFragment extends BrowseFragment {
         public void onItemSelected(Presenter.ViewHolder itemViewHolder, Object item,
                                    RowPresenter.ViewHolder rowViewHolder, Row row) {
             if (item instanceof VideoContent) {
-                mBackgroundURI = ((VideoContent) item).getBackgroundImageURI();
-                startBackgroundTimer();
+                if (rowViewHolder instanceof ListRowPresenter.ViewHolder) {
+                    mBackgroundPrefetcher.onItemSelected(((ListRow) row).getAdapter(),
+                            ((ListRowPresenter.ViewHolder) rowViewHolder).getSelectedPosition());
+                }
+
+                /**
+                 * Show the background right away if it has been prefetched, otherwise wait for
+                 * the selection to settle before decoding it
+                 */
+                URI backgroundUri = ((VideoContent) item).getBackgroundImageURI();
+                Bitmap prefetched = mBackgroundPrefetcher.get(
+                        backgroundUri == null ? null : backgroundUri.toString());
+                if (prefetched != null) {
+                    mHandler.removeCallbacks(mBackgroudUpdateRunnable);
+                    mBackgroundURI = null;
+                    mBackgroundManager.setBitmap(prefetched);
+                } else {
+                    mBackgroundURI = backgroundUri;
+                    startBackgroundTimer();
+                }
             } else {
                 /**
                  * make sure the background of other items are removed so the setting icon can be
@@ -218,6 +247,18 @@ public class DynamicRowsFragment extends BrowseFragment {
         mBackgroundManager.attach(getActivity().getWindow());
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
+        mBackgroundPrefetcher = new BackgroundPrefetcher(getActivity(), mMetrics.widthPixels,
+                mMetrics.heightPixels,
+                new BackgroundPrefetcher.ImageUrlProvider() {
+                    @Override
+                    public String getImageUrl(Object item) {
+                        if (!(item instanceof VideoContent)) {
+                            return null;
+                        }
+                        URI uri = ((VideoContent) item).getBackgroundImageURI();
+                        return uri == null ? null : uri.toString();
+                    }
+                });
     }
 
     private void setupEventListeners() {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.leanback.widget.ObjectAdapter;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.transition.Transition;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decodes the background images of the items next to the focused one, favouring the direction
+ * the user is moving in, so that the background can be swapped as soon as one of them is selected
+ * without waiting for a decode.
+ * <p>
+ * Images are decoded at display size as RGB_565, backgrounds are opaque, into a cache dedicated to
+ * backgrounds. The cache is bounded by bytes to a fraction of the memory class of the application,
+ * so that it holds fewer images on devices with less memory.
+ */
+public class BackgroundPrefetcher {
+
+    // How many items to prefetch in the direction of travel, and behind it.
+    private static final int PREFETCH_AHEAD = 2;
+    private static final int PREFETCH_BEHIND = 1;
+    // Share of the memory class given to the cache. A 192 MB memory class holds five 1080p images.
+    private static final int MEMORY_CLASS_FRACTION = 8;
+
+    /**
+     * Returns the background image URL of an item, or null if it has none.
+     */
+    public interface ImageUrlProvider {
+        String getImageUrl(Object item);
+    }
+
+    private final Context mContext;
+    private final int mWidth;
+    private final int mHeight;
+    private final ImageUrlProvider mUrlProvider;
+    private final LruCache<String, Bitmap> mCache;
+    private final Set<String> mPending = new HashSet<>();
+
+    private ObjectAdapter mLastAdapter;
+    private int mLastPosition = -1;
+    private int mHits;
+    private int mMisses;
+
+    /**
+     * @param width The width the images are displayed at
+     * @param height The height the images are displayed at
+     */
+    public BackgroundPrefetcher(Context context, int width, int height,
+            ImageUrlProvider urlProvider) {
+        // Images are decoded through the application so that they outlive a single fragment.
+        mContext = context.getApplicationContext();
+        mWidth = width;
+        mHeight = height;
+        mUrlProvider = urlProvider;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_FRACTION;
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Prefetches the neighbours of the item at {@code position} in {@code adapter}. Moving along
+     * the same row prefetches further ahead in that direction; moving to another row prefetches
+     * on both sides.
+     */
+    public void onItemSelected(ObjectAdapter adapter, int position) {
+        if (adapter == null || position < 0) {
+            return;
+        }
+        int direction = 0;
+        if (adapter == mLastAdapter && mLastPosition >= 0) {
+            direction = Integer.signum(position - mLastPosition);
+        }
+        mLastAdapter = adapter;
+        mLastPosition = position;
+
+        if (direction == 0) {
+            for (int i = 1; i <= PREFETCH_AHEAD; i++) {
+                prefetch(adapter, position + i);
+                prefetch(adapter, position - i);
+            }
+        } else {
+            for (int i = 1; i <= PREFETCH_AHEAD; i++) {
+                prefetch(adapter, position + direction * i);
+            }
+            for (int i = 1; i <= PREFETCH_BEHIND; i++) {
+                prefetch(adapter, position - direction * i);
+            }
+        }
+    }
+
+    /**
+     * Returns the decoded image for the URL, or null if it has not been prefetched.
+     */
+    public Bitmap get(String url) {
+        Bitmap bitmap = url == null ? null : mCache.get(url);
+        if (bitmap != null) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return bitmap;
+    }
+
+    public int getHitCount() {
+        return mHits;
+    }
+
+    public int getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Drops every prefetched image.
+     */
+    public void clear() {
+        mCache.evictAll();
+        mPending.clear();
+        mLastAdapter = null;
+        mLastPosition = -1;
+    }
+
+    private void prefetch(ObjectAdapter adapter, int position) {
+        if (position < 0 || position >= adapter.size()) {
+            return;
+        }
+        final String url = mUrlProvider.getImageUrl(adapter.get(position));
+        if (TextUtils.isEmpty(url) || mCache.get(url) != null || !mPending.add(url)) {
+            return;
+        }
+
+        // The target is never cleared, so Glide does not recycle the bitmap while it is cached.
+        Glide.with(mContext)
+                .asBitmap()
+                .load(url)
+                .apply(RequestOptions.centerCropTransform()
+                        .format(DecodeFormat.PREFER_RGB_565)
+                        .skipMemoryCache(true))
+                .into(new SimpleTarget<Bitmap>(mWidth, mHeight) {
+                    @Override
+                    public void onResourceReady(
+                            Bitmap resource,
+                            Transition<? super Bitmap> transition) {
+                        if (mPending.remove(url)) {
+                            mCache.put(url, resource);
+                        }
+                    }
+
+                    @Override
+                    public void onLoadFailed(Drawable errorDrawable) {
+                        mPending.remove(url);
+                    }
+                });
+    }
+}
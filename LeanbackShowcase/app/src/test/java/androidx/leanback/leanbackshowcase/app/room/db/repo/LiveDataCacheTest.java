@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import androidx.lifecycle.LiveData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LiveDataCacheTest {
+
+    /**
+     * Live data whose observed state is set by the test, observing for real needs a main looper.
+     */
+    private static class FakeLiveData extends LiveData<String> {
+        boolean mObserved;
+
+        @Override
+        public boolean hasObservers() {
+            return mObserved;
+        }
+    }
+
+    private static LiveDataCache<String, FakeLiveData> createCache(int maxSize) {
+        return new LiveDataCache<>(maxSize, new LiveDataCache.Loader<String, FakeLiveData>() {
+            @Override
+            public FakeLiveData load(String key) {
+                return new FakeLiveData();
+            }
+        });
+    }
+
+    @Test
+    public void keepsNewEntryWhenAllOthersAreObserved() {
+        LiveDataCache<String, FakeLiveData> cache = createCache(2);
+        cache.get("a").mObserved = true;
+        cache.get("b").mObserved = true;
+
+        FakeLiveData c = cache.get("c");
+        assertSame(c, cache.get("c"));
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void trimsOnHitOnceObserversAreGone() {
+        LiveDataCache<String, FakeLiveData> cache = createCache(2);
+        FakeLiveData a = cache.get("a");
+        a.mObserved = true;
+        FakeLiveData b = cache.get("b");
+        b.mObserved = true;
+        cache.get("c").mObserved = true;
+        assertEquals(3, cache.size());
+
+        a.mObserved = false;
+        assertSame(b, cache.get("b"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUnobservedEntry() {
+        LiveDataCache<String, FakeLiveData> cache = createCache(2);
+        FakeLiveData a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+
+        assertSame(a, cache.get("a"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+}
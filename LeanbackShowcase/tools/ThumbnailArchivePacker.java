@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Packs a directory of trick play frames into the thumbnail archive read by
+ * PlaybackSeekArchiveDataProvider.
+ *
+ * The frames are taken in file name order (frame_0001.jpg, frame_0002.jpg, ...), scaled to the
+ * tile size and tiled into JPEG sprite sheets. See ThumbnailArchive in the app for the layout.
+ *
+ * Usage, with JDK 11 or later:
+ * <pre>
+ * java ThumbnailArchivePacker.java &lt;frame dir&gt; &lt;interval ms&gt; &lt;output&gt;
+ *         [tile width] [tile height] [columns] [rows]
+ * adb push thumbnails.lbtp /sdcard/seek/thumbnails.lbtp
+ * </pre>
+ */
+public class ThumbnailArchivePacker {
+
+    // keep in sync with ThumbnailArchive
+    static final int MAGIC = 0x4C425450;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SHEET_ENTRY_SIZE = 12;
+
+    static final int DEFAULT_TILE_WIDTH = 320;
+    static final int DEFAULT_TILE_HEIGHT = 180;
+    static final int DEFAULT_COLUMNS = 5;
+    static final int DEFAULT_ROWS = 5;
+    static final float JPEG_QUALITY = 0.8f;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 7) {
+            System.err.println("Usage: ThumbnailArchivePacker <frame dir> <interval ms> <output>"
+                    + " [tile width] [tile height] [columns] [rows]");
+            System.exit(1);
+        }
+        File dir = new File(args[0]);
+        long interval = Long.parseLong(args[1]);
+        File output = new File(args[2]);
+        int tileWidth = DEFAULT_TILE_WIDTH;
+        int tileHeight = DEFAULT_TILE_HEIGHT;
+        int columns = DEFAULT_COLUMNS;
+        int rows = DEFAULT_ROWS;
+        if (args.length == 7) {
+            tileWidth = Integer.parseInt(args[3]);
+            tileHeight = Integer.parseInt(args[4]);
+            columns = Integer.parseInt(args[5]);
+            rows = Integer.parseInt(args[6]);
+        }
+
+        File[] frames = dir.listFiles((d, name) -> {
+            String lower = name.toLowerCase();
+            return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+        });
+        if (frames == null || frames.length == 0) {
+            throw new IOException("No frames in " + dir);
+        }
+        Arrays.sort(frames);
+
+        pack(Arrays.asList(frames), interval, output, tileWidth, tileHeight, columns, rows);
+        System.out.println("Packed " + frames.length + " frames into " + output + " ("
+                + output.length() + " bytes)");
+    }
+
+    static void pack(List<File> frames, long interval, File output, int tileWidth,
+            int tileHeight, int columns, int rows) throws IOException {
+        int tilesPerSheet = columns * rows;
+        int sheetCount = (frames.size() + tilesPerSheet - 1) / tilesPerSheet;
+
+        // encode all the sheets first, the index needs their sizes
+        List<byte[]> sheets = new ArrayList<>();
+        for (int sheet = 0; sheet < sheetCount; sheet++) {
+            BufferedImage image = new BufferedImage(columns * tileWidth, rows * tileHeight,
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (int tile = 0; tile < tilesPerSheet; tile++) {
+                int index = sheet * tilesPerSheet + tile;
+                if (index >= frames.size()) {
+                    break;
+                }
+                BufferedImage frame = ImageIO.read(frames.get(index));
+                if (frame == null) {
+                    throw new IOException("Cannot decode " + frames.get(index));
+                }
+                g.drawImage(frame, (tile % columns) * tileWidth, (tile / columns) * tileHeight,
+                        tileWidth, tileHeight, null);
+            }
+            g.dispose();
+            sheets.add(encodeJpeg(image));
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(frames.size());
+            out.writeInt(tileWidth);
+            out.writeInt(tileHeight);
+            out.writeInt(columns);
+            out.writeInt(rows);
+            out.writeInt(sheetCount);
+            for (int i = 0; i < frames.size(); i++) {
+                out.writeLong(i * interval);
+            }
+            long offset = HEADER_SIZE + frames.size() * 8L + sheetCount * (long) SHEET_ENTRY_SIZE;
+            for (byte[] sheet : sheets) {
+                out.writeLong(offset);
+                out.writeInt(sheet.length);
+                offset += sheet.length;
+            }
+            for (byte[] sheet : sheets) {
+                out.write(sheet);
+            }
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}